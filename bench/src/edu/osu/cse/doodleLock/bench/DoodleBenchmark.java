@@ -0,0 +1,155 @@
+package edu.osu.cse.doodleLock.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.osu.cse.doodleLock.core.AuthenticationResult;
+import edu.osu.cse.doodleLock.core.BatchScorer;
+import edu.osu.cse.doodleLock.core.DtwModel;
+import edu.osu.cse.doodleLock.core.FeatureBatch;
+import edu.osu.cse.doodleLock.core.FeatureExtractor;
+import edu.osu.cse.doodleLock.core.GaussianModel;
+import edu.osu.cse.doodleLock.core.Stroke;
+
+/**
+ * Measures the stages of the doodle pipeline that depend on a training set:
+ * training a model, and scoring genuine and impostor attempts against it.
+ * Feature extraction is measured by ExtractBenchmark, since it does not vary
+ * with the training set. Throughput and latency percentiles are reported for
+ * every stage; run with -prof gc for allocation rates
+ *
+ * @author David
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoodleBenchmark {
+
+    /**
+     * Number of stored attempts scored by the batch benchmarks
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of strokes in every doodle
+     */
+    @Param({ "1", "3", "12" })
+    public int strokes;
+
+    /**
+     * Number of training samples. 5 and 10 are the training session limits,
+     * the rest show how training scales past them
+     */
+    @Param({ "5", "10", "100", "1000" })
+    public int trainingSize;
+
+    private Stroke[][] training;
+    private Stroke[] genuine;
+    private Stroke[] impostor;
+    private double[] genuineFeatures;
+    private double[] impostorFeatures;
+    private GaussianModel model;
+    private DtwModel dtwModel;
+
+    /**
+     * Stored attempts for the batch benchmarks, half genuine and half impostor
+     */
+    private double[][] attempts;
+    private FeatureBatch batch;
+    private BatchScorer batchScorer;
+
+    @Setup
+    public void setup() {
+
+        SyntheticDoodles user = new SyntheticDoodles(42, strokes, 8, 120);
+        SyntheticDoodles other = new SyntheticDoodles(7, strokes, 8, 120);
+
+        training = user.next(trainingSize);
+        genuine = user.next();
+        impostor = other.next();
+        genuineFeatures = FeatureExtractor.extract(genuine);
+        impostorFeatures = FeatureExtractor.extract(impostor);
+
+        model = train();
+
+        dtwModel = new DtwModel();
+        for (Stroke[] sample : training) {
+            dtwModel.addSample(sample);
+        }
+        // the threshold is computed by the first score
+        dtwModel.score(genuine);
+
+        attempts = new double[BATCH_SIZE][];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            attempts[i] = FeatureExtractor.extract(i % 2 == 0 ? user.next() : other.next());
+        }
+        batch = new FeatureBatch(BATCH_SIZE);
+        for (double[] attempt : attempts) {
+            batch.add(attempt);
+        }
+        batchScorer = new BatchScorer();
+    }
+
+    @Benchmark
+    public GaussianModel train() {
+        GaussianModel trained = new GaussianModel();
+        for (Stroke[] sample : training) {
+            trained.addSample(FeatureExtractor.extract(sample));
+        }
+        return trained;
+    }
+
+    @Benchmark
+    public AuthenticationResult scoreGenuine() {
+        return model.score(genuineFeatures);
+    }
+
+    @Benchmark
+    public AuthenticationResult scoreImpostor() {
+        return model.score(impostorFeatures);
+    }
+
+    @Benchmark
+    public AuthenticationResult authenticateGenuine() {
+        return model.score(FeatureExtractor.extract(genuine));
+    }
+
+    @Benchmark
+    public AuthenticationResult scoreDtwGenuine() {
+        return dtwModel.score(genuine);
+    }
+
+    @Benchmark
+    public AuthenticationResult scoreDtwImpostor() {
+        return dtwModel.score(impostor);
+    }
+
+    @Benchmark
+    public double scoreEach() {
+        double sum = 0;
+        for (double[] attempt : attempts) {
+            sum += model.score(attempt).getScore();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] scoreBatch() {
+        return batchScorer.score(model, batch);
+    }
+}
@@ -0,0 +1,52 @@
+package edu.osu.cse.doodleLock.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.osu.cse.doodleLock.core.FeatureExtractor;
+import edu.osu.cse.doodleLock.core.Stroke;
+
+/**
+ * Measures feature extraction of a single doodle. It needs no training set, so
+ * it is only parameterised by the number of strokes
+ *
+ * @author David
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractBenchmark {
+
+    /**
+     * Number of strokes in the doodle
+     */
+    @Param({ "1", "3", "12" })
+    public int strokes;
+
+    private Stroke[] doodle;
+
+    @Setup
+    public void setup() {
+        doodle = new SyntheticDoodles(42, strokes, 8, 120).next();
+    }
+
+    @Benchmark
+    public double[] extract() {
+        return FeatureExtractor.extract(doodle);
+    }
+}
@@ -0,0 +1,124 @@
+package edu.osu.cse.doodleLock.bench;
+
+import java.util.Random;
+
+import edu.osu.cse.doodleLock.core.Stroke;
+
+/**
+ * Generates repeatable synthetic doodles for benchmarking. Each doodle is a
+ * reference shape plus random jitter, so samples of the same doodle look like
+ * a user drawing it several times
+ *
+ * @author David
+ *
+ */
+public class SyntheticDoodles {
+
+    /**
+     * Size of the square canvas the doodles are drawn on, roughly a phone screen
+     */
+    private static final float CANVAS_SIZE = 480f;
+
+    /**
+     * How far each point may wander from the reference shape
+     */
+    private static final float JITTER = 12f;
+
+    /**
+     * Time between two points, matching a 60Hz touch screen
+     */
+    private static final long POINT_INTERVAL = 16;
+
+    private final Random random;
+
+    /**
+     * Control points of the reference shape, one array per stroke
+     */
+    private final float[][] reference;
+
+    /**
+     * Number of points drawn for each stroke of the reference shape
+     */
+    private final int[] pointCounts;
+
+    /**
+     * Creates a generator for one doodle
+     *
+     * @param seed
+     *            Seed, the same seed always generates the same samples
+     * @param strokeCount
+     *            Number of strokes in the doodle
+     * @param minPoints
+     *            Fewest points in a stroke
+     * @param maxPoints
+     *            Most points in a stroke
+     */
+    public SyntheticDoodles(long seed, int strokeCount, int minPoints, int maxPoints) {
+
+        random = new Random(seed);
+        reference = new float[strokeCount][];
+        pointCounts = new int[strokeCount];
+
+        for (int i = 0; i < strokeCount; i++) {
+            pointCounts[i] = minPoints + random.nextInt(maxPoints - minPoints + 1);
+
+            // each stroke is a quadratic curve through three random points
+            reference[i] = new float[6];
+            for (int j = 0; j < reference[i].length; j++) {
+                reference[i][j] = random.nextFloat() * CANVAS_SIZE;
+            }
+        }
+    }
+
+    /**
+     * @return A new jittered sample of the doodle
+     */
+    public Stroke[] next() {
+
+        Stroke[] strokes = new Stroke[reference.length];
+        long time = 0;
+
+        for (int i = 0; i < strokes.length; i++) {
+            float[] control = reference[i];
+            int count = pointCounts[i];
+            float[] points = new float[count * 2];
+            long[] timestamps = new long[count];
+
+            for (int j = 0; j < count; j++) {
+                float t = count == 1 ? 0f : (float) j / (count - 1);
+                float a = (1 - t) * (1 - t);
+                float b = 2 * (1 - t) * t;
+                float c = t * t;
+
+                points[2 * j] = a * control[0] + b * control[2] + c * control[4] + jitter();
+                points[2 * j + 1] = a * control[1] + b * control[3] + c * control[5] + jitter();
+                timestamps[j] = time;
+                time += POINT_INTERVAL + random.nextInt(4);
+            }
+
+            strokes[i] = new Stroke(points, timestamps);
+
+            // pause between strokes
+            time += 150 + random.nextInt(100);
+        }
+
+        return strokes;
+    }
+
+    /**
+     * @param count
+     *            Number of samples
+     * @return count new samples of the doodle
+     */
+    public Stroke[][] next(int count) {
+        Stroke[][] samples = new Stroke[count][];
+        for (int i = 0; i < count; i++) {
+            samples[i] = next();
+        }
+        return samples;
+    }
+
+    private float jitter() {
+        return (random.nextFloat() * 2 - 1) * JITTER;
+    }
+}
@@ -17,29 +17,49 @@
 package edu.osu.cse.doodleLock;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import android.app.Activity;
 import android.gesture.Gesture;
 import android.gesture.GestureLibraries;
 import android.gesture.GestureLibrary;
 import android.gesture.GestureOverlayView;
+import android.gesture.GestureStroke;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import android.widget.Toast;
+import edu.osu.cse.doodleLock.core.AuthenticationResult;
+import edu.osu.cse.doodleLock.core.DtwModel;
+import edu.osu.cse.doodleLock.core.Enrollment;
+import edu.osu.cse.doodleLock.core.Metrics;
+import edu.osu.cse.doodleLock.core.ModelIndex;
+import edu.osu.cse.doodleLock.core.ProgressiveScorer;
+import edu.osu.cse.doodleLock.core.SampleJournal;
+import edu.osu.cse.doodleLock.core.Stroke;
+import edu.osu.cse.doodleLock.core.Trash;
+import edu.osu.cse.doodleLock.core.UserFiles;
 
 public class CreateDoodleActivity extends Activity
 {
-    private static final int TRAINING_SESSION_COUNT_MAX = 10;
-    private static final int TRAINING_SESSION_COUNT_MIN = 5;
+    private static final int TRAINING_SESSION_COUNT_MAX = Enrollment.MAX_SAMPLES;
+    private static final int TRAINING_SESSION_COUNT_MIN = Enrollment.MIN_SAMPLES;
     private static final float LENGTH_THRESHOLD = 120.0f;
 
     protected Gesture mGesture;
 
+    /**
+     * Duration of each stroke of the current gesture, measured from the touch events
+     */
+    protected ArrayList<Long> mStrokeDurations = new ArrayList<Long>();
+
     /**
      * List of the gestures that the user has saved
      */
@@ -72,18 +92,54 @@ public class CreateDoodleActivity extends Activity
      */
     protected Doodle mDoodle;
 
+    /**
+     * Scores the authentication attempt stroke by stroke while it is drawn
+     */
+    protected ProgressiveScorer mScorer;
+
+    /**
+     * Loads the user's doodle, or the identification index, off the UI thread
+     */
+    private LoadTask mLoadTask;
+
+    /**
+     * The attempt being scored off the UI thread, cancelled when the user
+     * starts drawing another one
+     */
+    private AsyncTask<Void, Void, ?> mAttemptTask;
+
     /**
      * Name of the user passed in by the parent activity
      */
     protected String mUserName;
     protected String mActivityType;
 
+    /**
+     * The directory holding every user
+     */
+    protected File mRootDir;
+
     protected File mUserDir;
     protected File mUserFile;
 
+    /**
+     * Journal the training samples are appended to as they are saved
+     */
+    protected File mJournalFile;
+
+    /**
+     * The trained doodle model, read when authenticating instead of the training gestures
+     */
+    protected File mModelFile;
+
     protected TextView mTrainingSessionName;
     protected TextView mAuthenticationSessionName;
 
+    /**
+     * The most users to report when identifying who drew a doodle
+     */
+    private static final int IDENTIFY_MAX_MATCHES = 3;
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
@@ -106,27 +162,52 @@ public class CreateDoodleActivity extends Activity
         mDiscardDoodleButton.setEnabled(false);
         mSaveDoodleButton.setEnabled(false);
 
-        // Set the doodle as null for the first gesture
-        mDoodle = null;
+        // Start with an empty doodle and add training gestures as they are saved
+        mDoodle = new Doodle();
+        mSavedGestureList = new ArrayList<Gesture>();
 
         // Get the user name passed with the intent
         mUserName = (String) this.getIntent().getExtras().get(getString(R.string.user_name));
         mActivityType = (String) this.getIntent().getExtras().get(getString(R.string.activity_type));
 
         // Make a directory for the user
-        mUserDir = new File(Environment.getExternalStorageDirectory() + "/" + getString(R.string.root_dir) + "/" + mUserName + "/");
-        mUserFile = new File(mUserDir.getAbsolutePath() + mUserName);
+        mRootDir = new File(Environment.getExternalStorageDirectory(), getString(R.string.root_dir));
+        if (mUserName != null)
+        {
+            mUserDir = UserFiles.getUserDir(mRootDir, mUserName);
+            mUserFile = UserFiles.getGestureFile(mRootDir, mUserName);
+            mModelFile = UserFiles.getModelFile(mRootDir, mUserName);
+            mJournalFile = UserFiles.getJournalFile(mRootDir, mUserName);
+        }
 
         if (mActivityType.equals(getString(R.string.train)))
         {
             mTrainingSessionName.setText(mUserName + "'s Training Session");
+            // Queued writes of an old model are dropped before the directory
+            // is set up, so none can land in it
+            DoodleCache.invalidate(mUserName);
             mUserDir.mkdirs();
+            // Samples saved just before a restart may still be on their way
+            // to the journal
+            SessionWriter.sync(mUserName);
+            recoverSession();
 
         }
         else if (mActivityType.equals(getString(R.string.retrain)))
         {
             mTrainingSessionName.setText("Retrain " + mUserName + "'s Doodle");
-            deletePreviousSession();
+            // Queued writes of the old model are dropped before its directory
+            // is replaced, so none can recreate it in the fresh one
+            DoodleCache.invalidate(mUserName);
+            // Writes still queued for the user land before the directory is
+            // replaced or the journal is recovered
+            SessionWriter.sync(mUserName);
+            // A restarted activity carries on with the session it started
+            if (savedInstanceState == null)
+            {
+                deletePreviousSession();
+            }
+            recoverSession();
         }
         else if (mActivityType.equals(getString(R.string.authenticate)))
         {
@@ -136,6 +217,20 @@ public class CreateDoodleActivity extends Activity
             mGestureOverlay = (GestureOverlayView) findViewById(R.id.authenticate_overlay);
             mAuthenticateButton = findViewById(R.id.authenticateDoodle);
             mAuthenticateButton.setEnabled(false);
+
+            // Strokes drawn before the doodle is loaded are scored once it is
+            mLoadTask = (LoadTask) new LoadTask().execute();
+        }
+        else if (mActivityType.equals(getString(R.string.identify)))
+        {
+            setContentView(R.layout.authenticate_gesture);
+            mAuthenticationSessionName = (TextView) findViewById(R.id.authenticationSessionName);
+            mAuthenticationSessionName.setText(getString(R.string.identify_session_name));
+            mGestureOverlay = (GestureOverlayView) findViewById(R.id.authenticate_overlay);
+            mAuthenticateButton = findViewById(R.id.authenticateDoodle);
+            mAuthenticateButton.setEnabled(false);
+
+            mLoadTask = (LoadTask) new LoadTask().execute();
         }
         else
         {
@@ -144,19 +239,49 @@ public class CreateDoodleActivity extends Activity
         }
 
         mGestureOverlay.addOnGestureListener(new GesturesProcessor());
+    }
 
-        mSavedGestureList = new ArrayList<Gesture>();
+    /**
+     * Restores the samples saved before the activity was restarted or the app
+     * was killed from the user's journal
+     */
+    private void recoverSession()
+    {
+        try
+        {
+            for (Stroke[] sample : SampleJournal.recover(mJournalFile))
+            {
+                mSavedGestureList.add(Doodle.toGesture(sample));
+                mDoodle.getModel().addSample(sample);
+            }
+        }
+        catch (IOException e)
+        {
+            Log.e(CreateDoodleActivity.class.getName(), "Could not recover the training session of " + mUserName, e);
+        }
+
+        if (mSavedGestureList.size() >= TRAINING_SESSION_COUNT_MIN)
+        {
+            mFinishSessionButton.setEnabled(true);
+        }
     }
 
     /**
-     * Delete the files in the user's directory
+     * Delete the files in the user's directory. The directory is swapped for an
+     * empty one and the old one is deleted in the background
      */
     private void deletePreviousSession()
     {
-        for (File file : mUserDir.listFiles())
+        try
         {
-            file.delete();
+            Trash.moveToTrash(mRootDir, mUserDir);
         }
+        catch (IOException e)
+        {
+            Log.e(CreateDoodleActivity.class.getName(), "Could not delete the previous session of " + mUserName, e);
+        }
+        mUserDir.mkdirs();
+        new EmptyTrashTask().execute(mRootDir);
     }
 
     @Override
@@ -192,19 +317,77 @@ public class CreateDoodleActivity extends Activity
 
     public void onAuthenticateButtonPress(View v)
     {
-        GestureLibrary userStore = GestureLibraries.fromFile(mUserFile);
-        userStore.load();
+        mAuthenticateButton.setEnabled(false);
+        cancelAttempt();
 
-        ArrayList<Gesture> gesturesFromFile = new ArrayList<Gesture>();
-        for (String entry : userStore.getGestureEntries())
+        Stroke[] strokes = Doodle.toStrokes(mGesture, getStrokeDurations());
+
+        if (mActivityType.equals(getString(R.string.identify)))
         {
-            gesturesFromFile.addAll(userStore.getGestures(entry));
+            mAttemptTask = new IdentifyTask(strokes).execute();
+            return;
         }
 
-        Doodle prediction = new Doodle(gesturesFromFile);
+        // Every stroke was already scored while it was drawn unless the gesture
+        // was restored from a saved state, the doodle was still loading or the
+        // engine only scores whole doodles
+        if (mScorer != null && mScorer.getStrokeCount() == mGesture.getStrokesCount())
+        {
+            long start = Metrics.start();
+            AuthenticationResult result = mScorer.finish();
+            Metrics.record(Metrics.STAGE_SCORE, start);
+            mScorer.reset();
+            showAuthenticationResult(result, mDoodle, strokes);
+        }
+        else
+        {
+            mAttemptTask = new AuthenticateTask(strokes).execute();
+        }
+    }
 
-        if (prediction.authenticate(mGesture))
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+        StoreWriter.flush();
+        ModelWriter.flush();
+        new ExportMetricsTask().execute(UserFiles.getMetricsFile(mRootDir));
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        if (mLoadTask != null && mLoadTask.getStatus() != LoadTask.Status.FINISHED)
         {
+            mLoadTask.cancel(true);
+            mLoadTask = null;
+        }
+        cancelAttempt();
+    }
+
+    /**
+     * Cancels the attempt being scored, its result is never shown
+     */
+    private void cancelAttempt()
+    {
+        if (mAttemptTask != null && mAttemptTask.getStatus() != AsyncTask.Status.FINISHED)
+        {
+            mAttemptTask.cancel(true);
+        }
+        mAttemptTask = null;
+    }
+
+    private void showAuthenticationResult(AuthenticationResult result, Doodle doodle, Stroke[] strokes)
+    {
+        Metrics.count(result);
+        if (result.isAccepted())
+        {
+            if (((CheckBox) findViewById(R.id.adaptModel)).isChecked())
+            {
+                adaptDoodle(doodle, strokes);
+            }
             Toast.makeText(this, "Success", Toast.LENGTH_SHORT).show();
             mGestureOverlay.clear(false);
             mAuthenticateButton.setEnabled(false);
@@ -218,6 +401,185 @@ public class CreateDoodleActivity extends Activity
 
     }
 
+    /**
+     * Folds an accepted attempt into a copy of the user's doodle and swaps the
+     * copy in everywhere the doodle is shared. Other threads scoring against
+     * the old doodle are never disturbed. The copy is written once a batch of
+     * attempts has been folded in
+     * 
+     * @param doodle The doodle that accepted the attempt
+     * @param strokes Strokes of the accepted attempt
+     */
+    private void adaptDoodle(Doodle doodle, Stroke[] strokes)
+    {
+        Doodle adapted = doodle.adapt(strokes);
+
+        // A doodle no longer cached was retrained, deleted or evicted, and its
+        // adaptation is dropped rather than written over the user's model
+        if (adapted == null || !DoodleCache.replace(mUserName, doodle, adapted))
+        {
+            return;
+        }
+
+        ModelWriter.adapted(mUserName, UserFiles.getModelFile(mRootDir, mUserName), adapted);
+
+        // The identification index keeps bounds derived from the old statistics
+        ModelIndex index = DoodleCache.getIndex();
+        if (index.contains(mUserName))
+        {
+            index.put(mUserName, adapted.getModel());
+        }
+
+        if (mDoodle == doodle)
+        {
+            mDoodle = adapted;
+            mScorer = adapted.newProgressiveScorer();
+        }
+    }
+
+    @Override
+    public void onLowMemory()
+    {
+        super.onLowMemory();
+        DoodleCache.trim();
+    }
+
+    private void showIdentificationResult(List<ModelIndex.Match> matches)
+    {
+        if (matches.isEmpty())
+        {
+            Toast.makeText(this, getString(R.string.identify_no_match), Toast.LENGTH_SHORT).show();
+        }
+        else
+        {
+            StringBuilder users = new StringBuilder(matches.get(0).getUser());
+            for (int i = 1; i < matches.size(); i++)
+            {
+                users.append(", ").append(matches.get(i).getUser());
+            }
+            Toast.makeText(this, getString(R.string.identify_success, users), Toast.LENGTH_SHORT).show();
+        }
+        mGestureOverlay.clear(false);
+    }
+
+    /**
+     * Adds every user missing from the shared identification index. Reads from
+     * storage, so it is only called off the UI thread
+     */
+    private void loadIndex()
+    {
+        ModelIndex index = DoodleCache.getIndex();
+        File[] files = mRootDir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            String user = file.getName();
+            if (UserFiles.isUserDir(file) && !index.contains(user)
+                    && (UserFiles.getModelFile(mRootDir, user).exists() || UserFiles.getGestureFile(mRootDir, user).exists()))
+            {
+                index.put(user, loadDoodle(user).getModel());
+            }
+        }
+    }
+
+    /**
+     * Loads a user's trained doodle from the cache, or from the model file if
+     * it is not cached. Users trained before the model file existed are rebuilt
+     * from their training gestures once and the model is saved for next time.
+     * Reads from storage, so it is only called off the UI thread. Tasks load
+     * one at a time so a user is never rebuilt twice at once
+     * 
+     * @param user Name of the user
+     * @return The user's doodle
+     */
+    private synchronized Doodle loadDoodle(String user)
+    {
+        Doodle doodle = DoodleCache.get(user);
+        if (doodle != null)
+        {
+            return doodle;
+        }
+
+        // A session that is still being written is waited for, and one
+        // finished just before the app was killed is still only in the journal
+        SessionWriter.sync(user);
+        try
+        {
+            SampleJournal.compact(UserFiles.getJournalFile(mRootDir, user), UserFiles.getGestureFile(mRootDir, user));
+        }
+        catch (IOException e)
+        {
+            Log.w(CreateDoodleActivity.class.getName(), "Could not compact the journal of " + user, e);
+        }
+
+        File modelFile = UserFiles.getModelFile(mRootDir, user);
+        if (modelFile.exists())
+        {
+            try
+            {
+                long start = Metrics.start();
+                doodle = Doodle.load(modelFile);
+                Metrics.record(Metrics.STAGE_LOAD_MODEL, start);
+                DoodleCache.put(user, doodle);
+                return doodle;
+            }
+            catch (IOException e)
+            {
+                Log.w(CreateDoodleActivity.class.getName(), "Rebuilding unreadable model for " + user, e);
+            }
+        }
+
+        long start = Metrics.start();
+        GestureLibrary userStore = GestureLibraries.fromFile(UserFiles.getGestureFile(mRootDir, user));
+        userStore.load();
+
+        ArrayList<Gesture> gesturesFromFile = new ArrayList<Gesture>();
+        for (String entry : userStore.getGestureEntries())
+        {
+            gesturesFromFile.addAll(userStore.getGestures(entry));
+        }
+        Metrics.record(Metrics.STAGE_LOAD_GESTURES, start);
+
+        start = Metrics.start();
+        doodle = new Doodle(gesturesFromFile);
+        Metrics.record(Metrics.STAGE_BUILD_DOODLE, start);
+        saveDoodle(user, doodle);
+        DoodleCache.put(user, doodle);
+        return doodle;
+    }
+
+    /**
+     * Queues the doodle to be written to the user's model file in the
+     * background, after the user's earlier writes
+     * 
+     * @param user Name of the user
+     * @param doodle The doodle to save, which is not changed afterwards
+     */
+    private void saveDoodle(final String user, final Doodle doodle)
+    {
+        final File modelFile = UserFiles.getModelFile(mRootDir, user);
+        SessionWriter.execute(user, new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    long start = Metrics.start();
+                    doodle.save(modelFile);
+                    Metrics.record(Metrics.STAGE_SAVE_MODEL, start);
+                }
+                catch (IOException e)
+                {
+                    Log.e(CreateDoodleActivity.class.getName(), "Could not save model for " + user, e);
+                }
+            }
+        });
+    }
+
     public void onSaveButtonPress(View v)
     {
         if (mGesture != null)
@@ -241,18 +603,25 @@ public class CreateDoodleActivity extends Activity
                 if (!haveMinDoodlesBeenDrawn)
                 {
                     mSavedGestureList.add(mGesture);
-                    mDoodle = new Doodle(mSavedGestureList);
-                    store.save();
+                    long start = Metrics.start();
+                    mDoodle.addGesture(mGesture, getStrokeDurations());
+                    Metrics.record(Metrics.STAGE_TRAIN_SAMPLE, start);
+                    appendToJournal(mGesture);
+                    StoreWriter.save(store);
                     Toast.makeText(this, getString(R.string.save_success), Toast.LENGTH_SHORT).show();
                 }
                 // Authenticate subsequent doodles
                 else if (haveMinDoodlesBeenDrawn)
                 {
                     // If the doodle matches the training set
-                    if (mDoodle.authenticate(mGesture))
+                    long start = Metrics.start();
+                    AuthenticationResult result = mDoodle.score(mGesture, getStrokeDurations());
+                    Metrics.record(Metrics.STAGE_SCORE, start);
+                    Metrics.count(result);
+
+                    if (result.isAccepted())
                     {
                         // mSavedGestureList.add(mGesture);
-                        mDoodle = new Doodle(mSavedGestureList);
                         // store.addGesture(name.toString().concat("" +
                         // mSavedGestureList.size()), mGesture);
                         // store.save();
@@ -287,22 +656,318 @@ public class CreateDoodleActivity extends Activity
 
     public void onFinishSessionButtonPress(View v)
     {
-        GestureLibrary userStore = GestureLibraries.fromFile(mUserFile);
+        // Every sample is queued for the journal, so finishing only marks the
+        // session done and folds the journal into the gesture file, after the
+        // samples are written
+        final File journal = mJournalFile;
+        final File userFile = mUserFile;
+        final String user = mUserName;
+        final ArrayList<Gesture> samples = new ArrayList<Gesture>(mSavedGestureList);
+        SessionWriter.execute(mUserName, new Runnable()
+        {
+            public void run()
+            {
+                finishJournal(journal, userFile, user, samples);
+            }
+        });
+
+        // The session trains a Gaussian model to check each doodle as it is
+        // saved, the shape matcher is only trained once the session is done
+        if (((CheckBox) findViewById(R.id.useDtw)).isChecked())
+        {
+            long start = Metrics.start();
+            DtwModel dtwModel = new DtwModel();
+            Doodle dtwDoodle = new Doodle(dtwModel, mSavedGestureList);
+            Metrics.record(Metrics.STAGE_BUILD_DOODLE, start);
+
+            // The shape matcher learns its threshold from doodles with the
+            // same number of strokes, without them the Gaussian model is kept
+            if (dtwModel.isTrained())
+            {
+                mDoodle = dtwDoodle;
+            }
+            else
+            {
+                Toast.makeText(this, getString(R.string.dtw_not_trained), Toast.LENGTH_LONG).show();
+            }
+        }
+        saveDoodle(mUserName, mDoodle);
+        DoodleCache.invalidate(mUserName);
+        Users.trained(mRootDir, mUserName, mDoodle.getGestureCount());
+
+        // The session is only over once everything it saved is on storage,
+        // which is waited for off the UI thread
+        mFinishSessionButton.setEnabled(false);
+        mSaveDoodleButton.setEnabled(false);
+        mDiscardDoodleButton.setEnabled(false);
+        new FinishTask().execute();
+    }
+
+    /**
+     * Queues a saved training gesture to be appended to the user's journal in
+     * the background
+     * 
+     * @param gesture The gesture that was saved
+     */
+    private void appendToJournal(Gesture gesture)
+    {
+        final File journal = mJournalFile;
+        final String user = mUserName;
+        final long id = gesture.getID();
+        final Stroke[] strokes = Doodle.toStrokes(gesture, getStrokeDurations());
+        SessionWriter.execute(mUserName, new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    SampleJournal.append(journal, id, strokes);
+                }
+                catch (IOException e)
+                {
+                    Log.e(CreateDoodleActivity.class.getName(), "Could not journal a sample for " + user, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks the end of the session in the journal and compacts it into the
+     * user's gesture file. If the journal cannot be finished the session's
+     * samples are written to the gesture file directly. Runs in the background
+     * and holds no reference to the activity
+     * 
+     * @param journal The user's journal
+     * @param userFile The user's gesture file
+     * @param user Name of the user
+     * @param samples The samples of the session
+     */
+    private static void finishJournal(File journal, File userFile, String user, ArrayList<Gesture> samples)
+    {
+        try
+        {
+            SampleJournal.finish(journal);
+        }
+        catch (IOException e)
+        {
+            Log.e(CreateDoodleActivity.class.getName(), "Could not finish the journal of " + user, e);
+
+            GestureLibrary userStore = GestureLibraries.fromFile(userFile);
+            for (Gesture gesture : samples)
+            {
+                userStore.addGesture(gesture.toString(), gesture);
+            }
+            userStore.save();
+            return;
+        }
+
+        try
+        {
+            SampleJournal.compact(journal, userFile);
+        }
+        catch (IOException e)
+        {
+            // The journal is left in place and compacted on the next load
+            Log.w(CreateDoodleActivity.class.getName(), "Could not compact " + journal, e);
+        }
+    }
+
+    /**
+     * Returns the stroke durations captured for the current gesture
+     * 
+     * @return Duration of each stroke, or null if some strokes were not captured
+     */
+    private long[] getStrokeDurations()
+    {
+        if (mGesture == null || mStrokeDurations.size() != mGesture.getStrokesCount())
+        {
+            return null;
+        }
+
+        long[] durations = new long[mStrokeDurations.size()];
+        for (int i = 0; i < durations.length; i++)
+        {
+            durations[i] = mStrokeDurations.get(i);
+        }
+        return durations;
+    }
+
+    /**
+     * Scores the strokes of the current gesture that have not been scored yet.
+     * A failing attempt is only marked in the scorer, the user is not told which
+     * stroke failed
+     */
+    private void scoreNewStrokes()
+    {
+        ArrayList<GestureStroke> strokes = mGesture.getStrokes();
+
+        // Fewer strokes than were scored means a new gesture was started
+        if (strokes.size() <= 1 || strokes.size() < mScorer.getStrokeCount())
+        {
+            mScorer.reset();
+        }
+
+        long[] durations = getStrokeDurations();
+        for (int i = mScorer.getStrokeCount(); i < strokes.size(); i++)
+        {
+            mScorer.addStroke(Doodle.toStroke(strokes.get(i), durations != null ? durations[i] : -1));
+        }
+    }
+
+    /**
+     * Waits until every queued save is on storage, then ends the training
+     * session
+     */
+    private class FinishTask extends AsyncTask<Void, Void, Void>
+    {
+        @Override
+        protected Void doInBackground(Void... params)
+        {
+            StoreWriter.sync();
+            SessionWriter.sync(mUserName);
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result)
+        {
+            super.onPostExecute(result);
+            finish();
+        }
+    }
+
+    /**
+     * Loads the user's doodle when authenticating, or fills the identification
+     * index when identifying
+     */
+    private class LoadTask extends AsyncTask<Void, Void, Doodle>
+    {
+        @Override
+        protected Doodle doInBackground(Void... params)
+        {
+            if (isCancelled()) return null;
+
+            if (mActivityType.equals(getString(R.string.identify)))
+            {
+                loadIndex();
+                return null;
+            }
+            return loadDoodle(mUserName);
+        }
+
+        @Override
+        protected void onPostExecute(Doodle doodle)
+        {
+            super.onPostExecute(doodle);
+
+            if (doodle == null)
+            {
+                return;
+            }
+
+            mDoodle = doodle;
+            mScorer = doodle.newProgressiveScorer();
+
+            // Catch up on the strokes drawn while the doodle was loading
+            if (mScorer != null && mGesture != null)
+            {
+                scoreNewStrokes();
+            }
+        }
+    }
+
+    /**
+     * Scores a whole attempt against the user's doodle, loading it first if
+     * the load task has not finished
+     */
+    private class AuthenticateTask extends AsyncTask<Void, Void, AuthenticationResult>
+    {
+        /**
+         * Copied from the gesture on the UI thread, which keeps drawing into it
+         */
+        private final Stroke[] mStrokes;
+
+        /**
+         * The doodle the attempt was scored against
+         */
+        private Doodle mScoredDoodle;
+
+        AuthenticateTask(Stroke[] strokes)
+        {
+            mStrokes = strokes;
+        }
+
+        @Override
+        protected AuthenticationResult doInBackground(Void... params)
+        {
+            Doodle doodle = loadDoodle(mUserName);
+            mScoredDoodle = doodle;
+
+            if (isCancelled()) return null;
+            long start = Metrics.start();
+            AuthenticationResult result = doodle.getModel().score(mStrokes);
+            Metrics.record(Metrics.STAGE_SCORE, start);
+            return result;
+        }
+
+        @Override
+        protected void onPostExecute(AuthenticationResult result)
+        {
+            super.onPostExecute(result);
+
+            if (mAttemptTask == this)
+            {
+                mAttemptTask = null;
+                showAuthenticationResult(result, mScoredDoodle, mStrokes);
+            }
+        }
+    }
+
+    /**
+     * Matches an attempt against every enrolled user
+     */
+    private class IdentifyTask extends AsyncTask<Void, Void, List<ModelIndex.Match>>
+    {
+        private final Stroke[] mStrokes;
 
-        for (Gesture gesture : mSavedGestureList)
+        IdentifyTask(Stroke[] strokes)
         {
-            userStore.addGesture(gesture.toString(), gesture);
+            mStrokes = strokes;
         }
 
-        userStore.save();
+        @Override
+        protected List<ModelIndex.Match> doInBackground(Void... params)
+        {
+            // Users are only loaded once, so this is quick after the load task
+            loadIndex();
+
+            if (isCancelled()) return null;
+            long start = Metrics.start();
+            List<ModelIndex.Match> matches = DoodleCache.getIndex().identify(mStrokes, IDENTIFY_MAX_MATCHES);
+            Metrics.record(Metrics.STAGE_IDENTIFY, start);
+            return matches;
+        }
 
-        finish();
+        @Override
+        protected void onPostExecute(List<ModelIndex.Match> matches)
+        {
+            super.onPostExecute(matches);
+
+            if (mAttemptTask == this)
+            {
+                mAttemptTask = null;
+                showIdentificationResult(matches);
+            }
+        }
     }
 
     private class GesturesProcessor implements GestureOverlayView.OnGestureListener
     {
         public void onGestureStarted(GestureOverlayView overlay, MotionEvent event)
         {
+            // A new drawing supersedes the attempt still being scored
+            cancelAttempt();
+
             mSaveDoodleButton.setEnabled(false);
             mDiscardDoodleButton.setEnabled(false);
             mGesture = null;
@@ -315,6 +980,14 @@ public class CreateDoodleActivity extends Activity
         public void onGestureEnded(GestureOverlayView overlay, MotionEvent event)
         {
             mGesture = overlay.getGesture();
+
+            // A single stroke means a new gesture was started
+            if (mGesture.getStrokesCount() == 1)
+            {
+                mStrokeDurations.clear();
+            }
+            mStrokeDurations.add(event.getEventTime() - event.getDownTime());
+
             if (mGesture.getLength() < LENGTH_THRESHOLD)
             {
                 overlay.clear(false);
@@ -328,6 +1001,10 @@ public class CreateDoodleActivity extends Activity
                 {
                     mAuthenticateButton.setEnabled(true);
                 }
+                if (mScorer != null)
+                {
+                    scoreNewStrokes();
+                }
             }
 
         }
@@ -1,14 +1,25 @@
 package edu.osu.cse.doodleLock;
 
-import java.lang.reflect.Field;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import android.gesture.Gesture;
+import android.gesture.GesturePoint;
 import android.gesture.GestureStroke;
-import android.util.Log;
+import edu.osu.cse.doodleLock.core.AuthenticationResult;
+import edu.osu.cse.doodleLock.core.DoodleModel;
+import edu.osu.cse.doodleLock.core.FeatureExtractor;
+import edu.osu.cse.doodleLock.core.GaussianModel;
+import edu.osu.cse.doodleLock.core.Metrics;
+import edu.osu.cse.doodleLock.core.ModelFiles;
+import edu.osu.cse.doodleLock.core.ProgressiveScorer;
+import edu.osu.cse.doodleLock.core.Stroke;
 
 /**
- * Representation of a "doodle" - a gesture used for authentication
+ * Representation of a "doodle" - a gesture used for authentication. Adapts
+ * android.gesture gestures to the DoodleModel that does the matching, a
+ * GaussianModel unless the user chose another engine
  *
  * @author David
  *
@@ -16,75 +27,128 @@ import android.util.Log;
 public class Doodle {
 
     /**
-     * The maximum size of the representation of the doodle Must be a multiple
-     * of 8
+     * The model trained from the doodle's gestures
      */
-    final int REP_SIZE = 96;
+    private final DoodleModel model;
 
     /**
-     * Contains numerical representation of training gestures for doodle
+     * Constructs an empty doodle with no training gestures
      */
-    ArrayList<double[]> numericalRep = new ArrayList<double[]>();
+    public Doodle() {
+        this(new GaussianModel());
+    }
 
     /**
-     * The confidence threshold at which to pass/fail auth Double between 0.0
-     * and 1.0
+     * Constructs a new doodle from a list of gestures
+     *
+     * @param gestureList
+     *            Training gestures for doodle
      */
-    final double THRESHOLD = 0.001;
+    public Doodle(ArrayList<Gesture> gestureList) {
+        this(new GaussianModel(), gestureList);
+    }
 
     /**
-     * An integer representing how "loosely" the algorithm will accept Value
-     * should be between 1 and 10, 1 = strict, 10 = lenient
+     * Constructs a new doodle from a list of gestures using the given engine
+     *
+     * @param model
+     *            Empty model to train
+     * @param gestureList
+     *            Training gestures for doodle
      */
-    final int TOLERANCE = 5;
+    public Doodle(DoodleModel model, ArrayList<Gesture> gestureList) {
+        this(model);
+
+        for (Gesture gesture : gestureList) {
+            addGesture(gesture);
+        }
+
+    }
 
     /**
-     * The mean of each dimension in numericalRep
+     * Constructs a doodle around an already trained model
+     *
+     * @param model
+     *            The trained model
      */
-    double[] means = new double[REP_SIZE];
+    public Doodle(DoodleModel model) {
+        this.model = model;
+    }
 
     /**
-     * The variance of each dimension in numericalRep
+     * @return The model trained from the doodle's gestures
      */
-    double[] variances = new double[REP_SIZE];
+    public DoodleModel getModel() {
+        return model;
+    }
 
     /**
-     * Constructs a new doodle from a list of gestures
+     * Adds a single training gesture to the doodle, updating the mean and
+     * variance of each dimension without revisiting the other samples
      *
-     * @param gestureList
-     *            Training gestures for doodle
+     * @param gesture
+     *            Training gesture to add
      */
-    public Doodle(ArrayList<Gesture> gestureList) {
+    public void addGesture(Gesture gesture) {
+        addGesture(gesture, null);
+    }
 
-        // iterate over the provided gestures and convert them to an array of
-        // doubles
-        for (Gesture gesture : gestureList) {
-            numericalRep.add(gestureToArray(gesture));
+    /**
+     * Adds a single training gesture to the doodle using stroke durations
+     * captured while it was drawn
+     *
+     * @param gesture
+     *            Training gesture to add
+     * @param strokeDurations
+     *            Duration of each stroke, or null to read them from the gesture
+     */
+    public void addGesture(Gesture gesture, long[] strokeDurations) {
+        Stroke[] strokes = toStrokes(gesture, strokeDurations);
+        if (model instanceof GaussianModel) {
+            ((GaussianModel) model).addSample(extract(strokes));
+        } else {
+            model.addSample(strokes);
         }
+    }
 
-        // calculate the mean and variance over each dimension
-        for (int i = 0; i < REP_SIZE; i++) {
-
-            double sum = 0.0;
-
-            for (double[] gestureRep : numericalRep) {
-                sum += gestureRep[i];
-            }
-
-            means[i] = sum / numericalRep.size();
+    /**
+     * Removes a single training gesture from the doodle, reversing the update
+     * made when it was added. Only the Gaussian engine supports removal
+     *
+     * @param index
+     *            Position of the gesture in the order it was added to this
+     *            instance
+     */
+    public void removeGesture(int index) {
+        if (!(model instanceof GaussianModel)) {
+            throw new UnsupportedOperationException("Engine does not support removing samples");
         }
+        ((GaussianModel) model).removeSample(index);
+    }
 
-        for (int i = 0; i < REP_SIZE; i++) {
-
-            double temp = 0;
-            for (double[] gestureRep : numericalRep) {
-                temp += (means[i] - gestureRep[i]) * (means[i] - gestureRep[i]);
-            }
-
-            variances[i] = temp / numericalRep.size();
-
+    /**
+     * Drops whatever the model keeps only for removing gestures, for doodles
+     * that are only scored from now on. Gestures added before this can no
+     * longer be removed
+     */
+    public void compact() {
+        if (model instanceof GaussianModel) {
+            ((GaussianModel) model).compact();
         }
+    }
 
+    /**
+     * @return An estimate of the heap the doodle's model takes, in bytes
+     */
+    public long getSizeBytes() {
+        return model.getSizeBytes();
+    }
+
+    /**
+     * @return The number of training gestures in the doodle
+     */
+    public int getGestureCount() {
+        return model.getSampleCount();
     }
 
     /**
@@ -96,119 +160,164 @@ public class Doodle {
      * @return True if gesture is acceptable
      */
     public boolean authenticate(Gesture testGesture) {
+        return score(testGesture).isAccepted();
+    }
 
-        // convert the input gesture into our numerical representation
-        double[] gestureRep = gestureToArray(testGesture);
-
-        double[] confidences = new double[REP_SIZE];
-
-        // calculate the confidence product over each dimension
-        double confidence = 1.0;
-        // keep track of how many approximately strokes there are
-        int count = 0;
-
-        for (int i = 0; i < REP_SIZE; i++) {
-            // check to see if the variance is 0 so no divide by zero issues
-            if (variances[i] != 0) {
-                confidences[i] = gauss(gestureRep[i], means[i], variances[i]);
-                confidence *= confidences[i];
-                count++;
-            } else if (gestureRep[i] != 0) {
-                // if the variance is 0, and the user has data, they exceeded
-                // the allowed number of strokes
-                return false;
-            }
+    /**
+     * Scores a gesture against the training values in log space. Scoring stops
+     * as soon as the gesture can no longer reach THRESHOLD
+     *
+     * @param testGesture
+     *            Gesture used to authenticate
+     * @return The decision along with the log confidence
+     */
+    public AuthenticationResult score(Gesture testGesture) {
+        return score(testGesture, null);
+    }
+
+    /**
+     * Scores a gesture against the training values using stroke durations
+     * captured while it was drawn
+     *
+     * @param testGesture
+     *            Gesture used to authenticate
+     * @param strokeDurations
+     *            Duration of each stroke, or null to read them from the gesture
+     * @return The decision along with the log confidence
+     */
+    public AuthenticationResult score(Gesture testGesture, long[] strokeDurations) {
+        return model.score(toStrokes(testGesture, strokeDurations));
+    }
 
+    /**
+     * @return A scorer that checks an attempt stroke by stroke while it is
+     *         drawn, or null if the engine can only score whole attempts
+     */
+    public ProgressiveScorer newProgressiveScorer() {
+        if (model instanceof GaussianModel) {
+            return new ProgressiveScorer((GaussianModel) model);
         }
+        return null;
+    }
 
-        // multiply the confidence by the number of values used so that the
-        // confidence is not as biased against patterns with many strokes
-        confidence *= count;
+    /**
+     * Moves the model towards an accepted attempt, so it follows a doodle that
+     * drifts over time. Only the Gaussian engine adapts. This doodle is left
+     * as it was, so attempts being scored against it are not disturbed
+     *
+     * @param strokes
+     *            Strokes of the accepted attempt
+     * @return A new doodle with the adapted model, or null if the engine does
+     *         not adapt
+     */
+    public Doodle adapt(Stroke[] strokes) {
+        if (!(model instanceof GaussianModel)) {
+            return null;
+        }
+        return new Doodle(((GaussianModel) model).adapt(extract(strokes), GaussianModel.ADAPTATION_RATE));
+    }
 
-        // return true if the confidence is above the defined threshold
-        return (confidence >= THRESHOLD);
+    /**
+     * Writes the trained model to a file
+     *
+     * @param file
+     *            File to write the model to
+     * @throws IOException
+     *             If the model could not be written
+     */
+    public void save(File file) throws IOException {
+        ModelFiles.save(model, file);
     }
 
     /**
-     * Converts a gesture object to an arbitrary numerical representation
+     * Reads a model previously written by save
+     *
+     * @param file
+     *            File to read the model from
+     * @return The loaded doodle
+     * @throws IOException
+     *             If the file is not a model trained with the current
+     *             parameters
+     */
+    public static Doodle load(File file) throws IOException {
+        return new Doodle(ModelFiles.load(file));
+    }
+
+    /**
+     * Extracts the representation a Gaussian model is trained on. It is timed
+     * here rather than in the model, so tools that train models on many
+     * threads do not contend on the shared timings
+     */
+    private static double[] extract(Stroke[] strokes) {
+        long start = Metrics.start();
+        double[] sample = FeatureExtractor.extract(strokes);
+        Metrics.record(Metrics.STAGE_EXTRACT, start);
+        return sample;
+    }
+
+    /**
+     * Converts a gesture object to the primitive strokes used by the model
      *
      * @param gesture
      *            The gesture to convert
-     * @return REP_SIZE length array of doubles representing the gesture
-     */
-    private double[] gestureToArray(Gesture gesture) {
-
-        double[] gestureValues = new double[REP_SIZE];
-
-        ArrayList<GestureStroke> strokes = gesture.getStrokes();
-
-        for (int i = 0; i < REP_SIZE / 8; i++) {
-
-            if (i < strokes.size()) {
-
-                GestureStroke currentStroke = strokes.get(i);
-                // 0 - Stroke Length
-                gestureValues[8 * i + 0] = currentStroke.length;
-                // 1 - Stroke start point - x
-                gestureValues[8 * i + 1] = currentStroke.points[0];
-                // 2 - Stroke start point - y
-                gestureValues[8 * i + 2] = currentStroke.points[1];
-                // 3 - Stroke end point - x
-                gestureValues[8 * i + 3] = currentStroke.points[currentStroke.points.length - 2];
-                // 4 - Stroke end point - y
-                gestureValues[8 * i + 4] = currentStroke.points[currentStroke.points.length - 1];
-                // 5 - Stroke width
-                gestureValues[8 * i + 5] = currentStroke.boundingBox.width();
-                // 6 - Stroke height
-                gestureValues[8 * i + 6] = currentStroke.boundingBox.height();
-
-                // Disclaimer: The code below is really bad practice and should
-                // not reflect on
-                // my abilities as a programmer. - David
-                long duration = 0;
-
-                try {
-                    Field f = currentStroke.getClass().getDeclaredField(
-                            "timestamps");
-                    f.setAccessible(true);
-
-                    long[] timestamps = (long[]) f.get(currentStroke);
-                    duration = timestamps[timestamps.length - 1]
-                            - timestamps[0];
-                } catch (Exception e) {
-                    // That's right, I am catching any and all exceptions. I'm
-                    // like a honey badger.
-                    // What are we gonna do about these exceptions? Nothing.
-                    Log.e("ERROR", "Reflection didn't work");
-                }
-
-                // 7 - Stroke Duration (time)
-                gestureValues[8 * i + 7] = duration;
-
-            } else {
-                for (int j = 0; j < 8; j++) {
-                    gestureValues[8 * i + j] = 0.0;
-                }
-            }
+     * @param strokeDurations
+     *            Duration of each stroke, or null to read them from the gesture
+     * @return The strokes of the gesture
+     */
+    static Stroke[] toStrokes(Gesture gesture, long[] strokeDurations) {
+
+        long start = Metrics.start();
+        ArrayList<GestureStroke> gestureStrokes = gesture.getStrokes();
+        Stroke[] strokes = new Stroke[gestureStrokes.size()];
 
+        for (int i = 0; i < strokes.length; i++) {
+            strokes[i] = toStroke(gestureStrokes.get(i),
+                    strokeDurations != null && i < strokeDurations.length ? strokeDurations[i] : -1);
         }
 
-        return gestureValues;
+        Metrics.record(Metrics.STAGE_CONVERT, start);
+        return strokes;
     }
 
     /**
-     * Returns the value of the Gaussian function with the following parameters
-     * Note: a = 1
+     * Converts primitive strokes back to a gesture, such as a sample recovered
+     * from a journal
      *
-     * @param x
-     *            Input to the function
-     * @param mean
-     *            Center of the function
-     * @param variance
-     *            Constant parameter
-     * @return Value between 0.0 and 1.0
-     */
-    private double gauss(double x, double mean, double variance) {
-        return Math.exp(-(x - mean) * (x - mean) / (TOLERANCE * 2 * variance));
+     * @param strokes
+     *            Strokes with the time of each point
+     * @return The gesture
+     */
+    static Gesture toGesture(Stroke[] strokes) {
+
+        Gesture gesture = new Gesture();
+
+        for (Stroke stroke : strokes) {
+            float[] points = stroke.getPoints();
+            long[] timestamps = stroke.getTimestamps();
+            ArrayList<GesturePoint> gesturePoints = new ArrayList<GesturePoint>(stroke.getPointCount());
+
+            for (int i = 0; i < stroke.getPointCount(); i++) {
+                gesturePoints.add(new GesturePoint(points[2 * i], points[2 * i + 1], timestamps != null ? timestamps[i] : 0));
+            }
+            gesture.addStroke(new GestureStroke(gesturePoints));
+        }
+
+        return gesture;
+    }
+
+    /**
+     * Converts a single gesture stroke to a primitive stroke
+     *
+     * @param gestureStroke
+     *            The stroke to convert
+     * @param duration
+     *            Duration of the stroke, or -1 to read it from the stroke
+     * @return The converted stroke
+     */
+    static Stroke toStroke(GestureStroke gestureStroke, long duration) {
+        if (duration >= 0) {
+            return new Stroke(gestureStroke.points, null, duration);
+        }
+        return new Stroke(gestureStroke.points, StrokeTimestamps.getTimestamps(gestureStroke));
     }
 }
@@ -0,0 +1,133 @@
+package edu.osu.cse.doodleLock;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.osu.cse.doodleLock.core.ModelIndex;
+
+/**
+ * Process wide cache of trained doodles keyed by user name, so repeat
+ * authentications do not have to read the model from storage. The least
+ * recently used doodle is evicted once the cache is full. Cached doodles are
+ * compacted, since they are only scored
+ *
+ * @author David
+ *
+ */
+final class DoodleCache {
+
+    /**
+     * The maximum number of doodles to keep in memory
+     */
+    static final int MAX_ENTRIES = 64;
+
+    private static final LinkedHashMap<String, Doodle> sDoodles = new LinkedHashMap<String, Doodle>(
+            16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Doodle> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Every enrolled user's model, for identifying who drew a doodle
+     */
+    private static final ModelIndex sIndex = new ModelIndex();
+
+    private DoodleCache() {
+    }
+
+    /**
+     * @param user
+     *            Name of the user
+     * @return The cached doodle for the user, or null if there is none
+     */
+    static synchronized Doodle get(String user) {
+        return sDoodles.get(user);
+    }
+
+    /**
+     * Caches the trained doodle for a user
+     *
+     * @param user
+     *            Name of the user
+     * @param doodle
+     *            The user's trained doodle
+     */
+    static synchronized void put(String user, Doodle doodle) {
+        doodle.compact();
+        sDoodles.put(user, doodle);
+    }
+
+    /**
+     * Swaps an adapted doodle in for the one it was adapted from
+     *
+     * @param user
+     *            Name of the user
+     * @param old
+     *            The doodle that was adapted
+     * @param doodle
+     *            The adapted doodle
+     * @return False if the cache no longer holds old, because the user was
+     *         retrained, deleted or evicted
+     */
+    static synchronized boolean replace(String user, Doodle old, Doodle doodle) {
+        if (sDoodles.get(user) != old) {
+            return false;
+        }
+        put(user, doodle);
+        return true;
+    }
+
+    /**
+     * @return An estimate of the heap taken by the cached doodles, in bytes
+     */
+    static synchronized long getSizeBytes() {
+        long size = 0;
+        for (Doodle doodle : sDoodles.values()) {
+            size += doodle.getSizeBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Drops the cached doodle for a user whose doodle was retrained or deleted,
+     * along with adaptations of the old doodle that were not written yet
+     *
+     * @param user
+     *            Name of the user
+     */
+    static synchronized void invalidate(String user) {
+        sDoodles.remove(user);
+        sIndex.remove(user);
+        ModelWriter.discard(user);
+    }
+
+    /**
+     * @return The identification index shared by the process. Users are
+     *         removed from it when invalidated
+     */
+    static ModelIndex getIndex() {
+        return sIndex;
+    }
+
+    /**
+     * Evicts the least recently used half of the cache and empties the
+     * identification index, called when the system is running low on memory
+     */
+    static synchronized void trim() {
+        sIndex.clear();
+
+        int evict = (sDoodles.size() + 1) / 2;
+        Iterator<String> users = sDoodles.keySet().iterator();
+
+        while (evict-- > 0 && users.hasNext()) {
+            users.next();
+            users.remove();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package edu.osu.cse.doodleLock;
+
+import java.io.File;
+
+import android.os.AsyncTask;
+import android.util.Log;
+import edu.osu.cse.doodleLock.core.Trash;
+
+/**
+ * Deletes everything in the trash of a root directory in the background. Holds
+ * no reference to an activity, so it can finish after the activity is gone
+ *
+ * @author David
+ *
+ */
+class EmptyTrashTask extends AsyncTask<File, Void, Void>
+{
+    @Override
+    protected Void doInBackground(File... roots)
+    {
+        for (File root : roots)
+        {
+            if (!Trash.empty(root))
+            {
+                // Whatever is left is deleted the next time the trash is emptied
+                Log.w(EmptyTrashTask.class.getName(), "Could not empty the trash of " + root);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package edu.osu.cse.doodleLock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import android.os.AsyncTask;
+import android.util.Log;
+import edu.osu.cse.doodleLock.core.Metrics;
+
+/**
+ * Writes the stage timings to a file and the debug log in the background, so
+ * they can be pulled from a device. Holds no reference to an activity, so it
+ * can finish after the activity is gone
+ *
+ * @author David
+ *
+ */
+class ExportMetricsTask extends AsyncTask<File, Void, Void>
+{
+    @Override
+    protected Void doInBackground(File... files)
+    {
+        try
+        {
+            for (File file : files)
+            {
+                Metrics.write(file);
+            }
+
+            StringWriter table = new StringWriter();
+            Metrics.write(table);
+            table.write("cached doodles\t" + DoodleCache.getSizeBytes() + " bytes\n");
+            Log.d(ExportMetricsTask.class.getName(), table.toString());
+        }
+        catch (IOException e)
+        {
+            Log.w(ExportMetricsTask.class.getName(), "Could not export the stage timings", e);
+        }
+        return null;
+    }
+}
@@ -24,7 +24,6 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
@@ -56,6 +55,9 @@ import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
+import edu.osu.cse.doodleLock.core.Trash;
+import edu.osu.cse.doodleLock.core.UserFiles;
+import edu.osu.cse.doodleLock.core.UserIndex;
 
 public class GestureBuilderActivity extends ListActivity
 {
@@ -65,6 +67,11 @@ public class GestureBuilderActivity extends ListActivity
     private static final int STATUS_NO_STORAGE = 2;
     private static final int STATUS_NOT_LOADED = 3;
 
+    /**
+     * Number of users handed to the list in each progress update
+     */
+    private static final int PUBLISH_BATCH_SIZE = 100;
+
     private static final int MENU_ID_RENAME = 1;
     private static final int MENU_ID_REMOVE = 2;
 
@@ -106,8 +113,29 @@ public class GestureBuilderActivity extends ListActivity
 
     private static GestureLibrary sStore;
 
+    /**
+     * True once sStore has been read from storage, guarded by sStore
+     */
+    private static boolean sStoreLoaded;
+
+    /**
+     * Finds the gestures of sStore by id, entry name and user, changes to
+     * sStore go through it
+     */
+    private static GestureCatalog sCatalog;
+
     private GesturesAdapter mAdapter;
     private UsersLoadTask mTask;
+
+    /**
+     * Renders the doodle next to each user off the UI thread
+     */
+    private ThumbnailLoader mThumbnails;
+
+    /**
+     * Model version of each listed user, which the thumbnails are keyed by
+     */
+    private final HashMap<String, Integer> mModelVersions = new HashMap<String, Integer>();
     private TextView mEmpty;
 
     // Fields to track dialogs
@@ -132,12 +160,22 @@ public class GestureBuilderActivity extends ListActivity
         if (sStore == null)
         {
             sStore = GestureLibraries.fromFile(mStoreFile);
+            sCatalog = new GestureCatalog(sStore);
         }
         mEmpty = (TextView) findViewById(android.R.id.empty);
 
         mUserDirectory = new File(Environment.getExternalStorageDirectory() + "/" + getString(R.string.root_dir) + "/");
         mUserDirectory.mkdirs();
 
+        final Resources resources = getResources();
+        mThumbnails = new ThumbnailLoader(mUserDirectory, resources,
+                (int) resources.getDimension(R.dimen.gesture_thumbnail_size),
+                (int) resources.getDimension(R.dimen.gesture_thumbnail_inset),
+                resources.getColor(R.color.gesture_color));
+
+        // Finish any deletes that were interrupted
+        new EmptyTrashTask().execute(mUserDirectory);
+
         // Load users into the list view
         this.loadUsers();
     }
@@ -185,6 +223,16 @@ public class GestureBuilderActivity extends ListActivity
         startActivityForResult(intent, REQUEST_NEW_GESTURE);
     }
 
+    /**
+     * Starts a new activity for identifying a user from their doodle alone
+     */
+    private void startUserIdentificationSession()
+    {
+        Intent intent = new Intent(this, CreateDoodleActivity.class);
+        intent.putExtra(getString(R.string.activity_type), getString(R.string.identify));
+        startActivityForResult(intent, REQUEST_NEW_GESTURE);
+    }
+
     public void reloadUsers(View v)
     {
         loadUsers();
@@ -207,7 +255,7 @@ public class GestureBuilderActivity extends ListActivity
     }
 
     /**
-     * Looks in the app directory and adds a user for every folder in it
+     * Fills the list with every user in the user index
      */
     private void loadUsers()
     {
@@ -218,6 +266,13 @@ public class GestureBuilderActivity extends ListActivity
         mTask = (UsersLoadTask) new UsersLoadTask().execute();
     }
 
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+        StoreWriter.flush();
+    }
+
     @Override
     protected void onDestroy()
     {
@@ -228,11 +283,20 @@ public class GestureBuilderActivity extends ListActivity
             mTask.cancel(true);
             mTask = null;
         }
+        mThumbnails.cancelAll();
 
         cleanupRenameDialog();
         cleanupUserOptionsDialog();
     }
 
+    @Override
+    public void onLowMemory()
+    {
+        super.onLowMemory();
+        DoodleCache.trim();
+        ThumbnailLoader.trim();
+    }
+
     /**
      * Dismisses the user options dialog and resets selected user
      */
@@ -276,20 +340,7 @@ public class GestureBuilderActivity extends ListActivity
         long id = state.getLong(GESTURES_INFO_ID, -1);
         if (id != -1)
         {
-            final Set<String> entries = sStore.getGestureEntries();
-            out: for (String name : entries)
-            {
-                for (Gesture gesture : sStore.getGestures(name))
-                {
-                    if (gesture.getID() == id)
-                    {
-                        mCurrentRenameGesture = new NamedGesture();
-                        mCurrentRenameGesture.name = name;
-                        mCurrentRenameGesture.gesture = gesture;
-                        break out;
-                    }
-                }
-            }
+            mCurrentRenameGesture = sCatalog.get(id);
         }
     }
 
@@ -330,7 +381,10 @@ public class GestureBuilderActivity extends ListActivity
             renameGesture(gesture);
             return true;
         case MENU_ID_REMOVE:
-            // deleteGesture(gesture);
+            if (sCatalog.remove(gesture.gesture.getID()))
+            {
+                StoreWriter.save(sStore);
+            }
             return true;
         }
 
@@ -384,6 +438,11 @@ public class GestureBuilderActivity extends ListActivity
         showDialog(DIALOG_NEW_USER);
     }
 
+    public void onIdentifyButtonPress(View v)
+    {
+        startUserIdentificationSession();
+    }
+
     /**
      * Creates the dialog to enter a user name and continue on to the training session
      * 
@@ -540,21 +599,12 @@ public class GestureBuilderActivity extends ListActivity
         {
             final NamedGesture renameGesture = mCurrentRenameGesture;
             final GesturesAdapter adapter = mAdapter;
-            final int count = adapter.getCount();
-
-            // Simple linear search, there should not be enough items to warrant
-            // a more sophisticated search
-            // for (int i = 0; i < count; i++)
-            // {
-            // final NamedGesture gesture = adapter.getItem(i);
-            // if (gesture.gesture.getID() == renameGesture.gesture.getID())
-            // {
-            // sStore.removeGesture(gesture.name, gesture.gesture);
-            // gesture.name = mInput.getText().toString();
-            // sStore.addGesture(gesture.name, gesture.gesture);
-            // break;
-            // }
-            // }
+
+            if (sCatalog.rename(renameGesture.gesture.getID(), name))
+            {
+                renameGesture.name = name;
+                StoreWriter.save(sStore);
+            }
 
             adapter.notifyDataSetChanged();
         }
@@ -581,18 +631,34 @@ public class GestureBuilderActivity extends ListActivity
      */
     private void deleteUser(String user)
     {
+        // Queued writes of the user's model are dropped and queued session
+        // writes are waited for first, so none can recreate the files once
+        // they are gone. The cached doodle is simply loaded again if the files
+        // cannot be moved
+        DoodleCache.invalidate(user);
+        SessionWriter.sync(user);
+
+        // Moving the user's files to the trash is the tombstone, the slow
+        // recursive delete happens in the background. Until both are in the
+        // trash the user is still enrolled, so nothing else is changed
+        try
+        {
+            Trash.moveToTrash(mUserDirectory, UserFiles.getGestureFile(mUserDirectory, user));
+            Trash.moveToTrash(mUserDirectory, UserFiles.getUserDir(mUserDirectory, user));
+        }
+        catch (IOException e)
+        {
+            Log.e(GestureBuilderActivity.class.getName(), "Could not delete " + user, e);
+            Toast.makeText(this, R.string.gestures_delete_error, Toast.LENGTH_LONG).show();
+            return;
+        }
+        new EmptyTrashTask().execute(mUserDirectory);
+        ThumbnailLoader.forget(user);
+
         final GesturesAdapter adapter = mAdapter;
         adapter.setNotifyOnChange(false);
 
-        // This could be done better
-        for (File file : mUserDirectory.listFiles())
-        {
-            if (file.getName().equals(user))
-            {
-                file.delete();
-                break;
-            }
-        }
+        Users.deleted(mUserDirectory, user);
 
         adapter.remove(user);
         // adapter.sort(mSorter);
@@ -605,22 +671,13 @@ public class GestureBuilderActivity extends ListActivity
     /**
      * Async task for loading the table with user names
      */
-    private class UsersLoadTask extends AsyncTask<Void, String, Integer>
+    private class UsersLoadTask extends AsyncTask<Void, UserIndex.Entry, Integer>
     {
-        private int mThumbnailSize;
-        private int mThumbnailInset;
-        private int mPathColor;
-
         @Override
         protected void onPreExecute()
         {
             super.onPreExecute();
 
-            final Resources resources = getResources();
-            mPathColor = resources.getColor(R.color.gesture_color);
-            mThumbnailInset = (int) resources.getDimension(R.dimen.gesture_thumbnail_inset);
-            mThumbnailSize = (int) resources.getDimension(R.dimen.gesture_thumbnail_size);
-
             findViewById(R.id.addButton).setEnabled(false);
 
             mAdapter.setNotifyOnChange(false);
@@ -636,20 +693,29 @@ public class GestureBuilderActivity extends ListActivity
                 return STATUS_NO_STORAGE;
             }
 
-            final GestureLibrary store = sStore;
-
-            ArrayList<String> users = new ArrayList<String>();
+            // The gesture library is read once, off the UI thread, and the
+            // catalog indexes it as soon as it is
+            synchronized (sStore)
+            {
+                if (!sStoreLoaded)
+                {
+                    sStoreLoaded = sStore.load();
+                    sCatalog.reload();
+                }
+            }
 
             Log.d(GestureBuilderActivity.class.getName(), mUserDirectory.getName());
             if (mUserDirectory.isDirectory())
             {
-                for (File file : mUserDirectory.listFiles())
+                // One read of the user index, handed to the adapter a batch at
+                // a time so the list fills without an update per user
+                List<UserIndex.Entry> entries = Users.list(mUserDirectory);
+                for (int start = 0; start < entries.size(); start += PUBLISH_BATCH_SIZE)
                 {
-                    if (file.isDirectory())
-                    {
-                        users.add(file.getName());
-                        publishProgress(file.getName());
-                    }
+                    if (isCancelled()) return STATUS_CANCELLED;
+
+                    int end = Math.min(start + PUBLISH_BATCH_SIZE, entries.size());
+                    publishProgress(entries.subList(start, end).toArray(new UserIndex.Entry[end - start]));
                 }
                 return STATUS_SUCCESS;
             }
@@ -658,16 +724,17 @@ public class GestureBuilderActivity extends ListActivity
         }
 
         @Override
-        protected void onProgressUpdate(String... values)
+        protected void onProgressUpdate(UserIndex.Entry... values)
         {
             super.onProgressUpdate(values);
 
             final GesturesAdapter adapter = mAdapter;
             adapter.setNotifyOnChange(false);
 
-            for (String user : values)
+            for (UserIndex.Entry entry : values)
             {
-                adapter.add(user);
+                mModelVersions.put(entry.getName(), entry.getModelVersion());
+                adapter.add(entry.getName());
             }
 
             // adapter.sort(mSorter);
@@ -728,6 +795,10 @@ public class GestureBuilderActivity extends ListActivity
             label.setTag(gesture);
             label.setText(this.getItem(position));
 
+            // A recycled view shows nothing until this user's thumbnail is ready
+            Integer modelVersion = mModelVersions.get(gesture);
+            mThumbnails.bind(label, gesture, modelVersion != null ? modelVersion : 0);
+
             return convertView;
         }
     }
@@ -0,0 +1,171 @@
+package edu.osu.cse.doodleLock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import android.gesture.Gesture;
+import android.gesture.GestureLibrary;
+import edu.osu.cse.doodleLock.GestureBuilderActivity.NamedGesture;
+
+/**
+ * Indexes the gestures of a GestureLibrary by gesture id and entry name, so
+ * finding, renaming and removing a gesture takes constant time however large
+ * the library is. Changes made through the catalog are made to the library as
+ * well, which keeps the two consistent. Changes made to the library directly
+ * need a call to reload.
+ *
+ * Every method holds the library's own lock, the one StoreWriter holds while
+ * saving it, so the library is never changed halfway through a save.
+ *
+ * A user's training gestures are kept in their own file under the users
+ * directory, not in this library, so the catalog has no notion of users
+ *
+ * @author David
+ *
+ */
+final class GestureCatalog {
+
+    private final GestureLibrary mStore;
+
+    private final HashMap<Long, NamedGesture> mById = new HashMap<Long, NamedGesture>();
+    private final HashMap<String, ArrayList<NamedGesture>> mByName = new HashMap<String, ArrayList<NamedGesture>>();
+
+    /**
+     * @param store
+     *            The library to index, as far as it is loaded
+     */
+    GestureCatalog(GestureLibrary store) {
+        mStore = store;
+        reload();
+    }
+
+    /**
+     * Indexes the library again from scratch
+     */
+    void reload() {
+        synchronized (mStore) {
+            mById.clear();
+            mByName.clear();
+
+            for (String name : mStore.getGestureEntries()) {
+                for (Gesture gesture : mStore.getGestures(name)) {
+                    index(name, gesture);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id
+     *            Id of the gesture
+     * @return The gesture with its entry name, or null if it is not in the
+     *         library
+     */
+    NamedGesture get(long id) {
+        synchronized (mStore) {
+            return mById.get(id);
+        }
+    }
+
+    /**
+     * @param name
+     *            Name of the entry
+     * @return The gestures of the entry
+     */
+    List<NamedGesture> getByName(String name) {
+        synchronized (mStore) {
+            return copy(mByName.get(name));
+        }
+    }
+
+    /**
+     * Adds a gesture to the library under an entry name
+     */
+    void add(String name, Gesture gesture) {
+        synchronized (mStore) {
+            mStore.addGesture(name, gesture);
+            index(name, gesture);
+        }
+    }
+
+    /**
+     * Moves a gesture to another entry
+     *
+     * @param id
+     *            Id of the gesture
+     * @param name
+     *            Name of the new entry
+     * @return False if the gesture is not in the library
+     */
+    boolean rename(long id, String name) {
+        synchronized (mStore) {
+            NamedGesture named = mById.get(id);
+            if (named == null) {
+                return false;
+            }
+
+            Gesture gesture = named.gesture;
+            remove(id);
+            add(name, gesture);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a gesture from the library
+     *
+     * @param id
+     *            Id of the gesture
+     * @return False if the gesture is not in the library
+     */
+    boolean remove(long id) {
+        synchronized (mStore) {
+            NamedGesture named = mById.remove(id);
+            if (named == null) {
+                return false;
+            }
+
+            mStore.removeGesture(named.name, named.gesture);
+            unindex(mByName, named.name, named);
+            return true;
+        }
+    }
+
+    private void index(String name, Gesture gesture) {
+        NamedGesture named = new NamedGesture();
+        named.name = name;
+        named.gesture = gesture;
+
+        mById.put(gesture.getID(), named);
+        add(mByName, name, named);
+    }
+
+    private static void add(HashMap<String, ArrayList<NamedGesture>> map, String key, NamedGesture named) {
+        ArrayList<NamedGesture> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<NamedGesture>(1);
+            map.put(key, list);
+        }
+        list.add(named);
+    }
+
+    private static void unindex(HashMap<String, ArrayList<NamedGesture>> map, String key, NamedGesture named) {
+        ArrayList<NamedGesture> list = map.get(key);
+        if (list != null) {
+            // entries only hold a handful of gestures each
+            list.remove(named);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static List<NamedGesture> copy(ArrayList<NamedGesture> list) {
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<NamedGesture>(list);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.osu.cse.doodleLock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.util.Log;
+
+/**
+ * Batched saving of models that adapt after each accepted attempt. A model is
+ * only written once BATCH_SIZE adaptations have built up, or when an activity
+ * pauses, so an attempt never waits for a model to be written. Losing the
+ * adaptations since the last write only loses a little drift
+ *
+ * @author David
+ *
+ */
+final class ModelWriter {
+
+    /**
+     * Number of adaptations after which a model is written
+     */
+    static final int BATCH_SIZE = 5;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * A model with adaptations that have not been written
+     */
+    private static class Pending {
+
+        final File file;
+
+        /**
+         * The latest adapted doodle, each adaptation makes a new one
+         */
+        Doodle doodle;
+        int adaptations;
+
+        Pending(File file, Doodle doodle) {
+            this.file = file;
+            this.doodle = doodle;
+        }
+    }
+
+    /**
+     * Models with unwritten adaptations by user
+     */
+    private static final HashMap<String, Pending> sPending = new HashMap<String, Pending>();
+
+    /**
+     * The doodle each queued write is for, by user. A write only goes ahead
+     * if its doodle is still the user's
+     */
+    private static final HashMap<String, Doodle> sTargets = new HashMap<String, Doodle>();
+
+    /**
+     * Held while a model is written, so a discarded write is never in progress
+     * once discard returns
+     */
+    private static final Object sWriteLock = new Object();
+
+    private ModelWriter() {
+    }
+
+    /**
+     * Records that a user's doodle adapted, writing it once enough
+     * adaptations have built up
+     *
+     * @param user
+     *            Name of the user
+     * @param file
+     *            The user's model file
+     * @param doodle
+     *            The adapted doodle, which replaces the user's doodle
+     */
+    static synchronized void adapted(String user, File file, Doodle doodle) {
+        Pending pending = sPending.get(user);
+        if (pending == null) {
+            pending = new Pending(file, doodle);
+            sPending.put(user, pending);
+        }
+        pending.doodle = doodle;
+
+        if (++pending.adaptations >= BATCH_SIZE) {
+            sPending.remove(user);
+            queue(user, pending);
+        }
+    }
+
+    /**
+     * Starts writing every model with unwritten adaptations
+     */
+    static synchronized void flush() {
+        Iterator<Map.Entry<String, Pending>> iterator = sPending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Pending> entry = iterator.next();
+            iterator.remove();
+            queue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drops the unwritten adaptations of a user who was retrained or deleted,
+     * waiting for a write of the old model that has already started
+     *
+     * @param user
+     *            Name of the user
+     */
+    static void discard(String user) {
+        synchronized (ModelWriter.class) {
+            sPending.remove(user);
+            sTargets.remove(user);
+        }
+        synchronized (sWriteLock) {
+            // nothing more to do once no write holds the lock
+        }
+    }
+
+    private static void queue(final String user, Pending pending) {
+        final Doodle doodle = pending.doodle;
+        final File file = pending.file;
+        sTargets.put(user, doodle);
+
+        sExecutor.execute(new Runnable() {
+            public void run() {
+                synchronized (sWriteLock) {
+                    synchronized (ModelWriter.class) {
+                        if (sTargets.get(user) != doodle) {
+                            return;
+                        }
+                    }
+
+                    try {
+                        doodle.save(file);
+                    } catch (IOException e) {
+                        // the adaptations are kept in memory and written with the next batch
+                        Log.w(ModelWriter.class.getName(), "Could not save the adapted model of " + user, e);
+                    }
+                }
+            }
+        });
+    }
+}
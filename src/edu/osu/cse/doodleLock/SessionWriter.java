@@ -0,0 +1,104 @@
+package edu.osu.cse.doodleLock;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.util.Log;
+
+/**
+ * Background writing of training sessions. Journal appends, the end of a
+ * session and model saves sync to storage, so they are queued here instead of
+ * run on the UI thread. A user's jobs run one at a time in the order they were
+ * queued, jobs of different users run side by side
+ *
+ * @author David
+ *
+ */
+final class SessionWriter {
+
+    private static final ExecutorService sExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * Jobs waiting to run by user. A user has an entry while one of their jobs
+     * is running
+     */
+    private static final HashMap<String, LinkedList<Runnable>> sQueues = new HashMap<String, LinkedList<Runnable>>();
+
+    private SessionWriter() {
+    }
+
+    /**
+     * Queues a job to run after every job queued for the user before it
+     *
+     * @param user
+     *            Name of the user
+     * @param job
+     *            The job
+     */
+    static synchronized void execute(final String user, final Runnable job) {
+        LinkedList<Runnable> queue = sQueues.get(user);
+        if (queue != null) {
+            queue.add(job);
+            return;
+        }
+
+        sQueues.put(user, new LinkedList<Runnable>());
+        sExecutor.execute(new Runnable() {
+            public void run() {
+                drain(user, job);
+            }
+        });
+    }
+
+    /**
+     * Waits until every job queued for the user before the call has run.
+     * Returns at once if nothing is queued, otherwise blocks for as long as
+     * the jobs take
+     *
+     * @param user
+     *            Name of the user
+     */
+    static void sync(String user) {
+        synchronized (SessionWriter.class) {
+            if (!sQueues.containsKey(user)) {
+                return;
+            }
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        execute(user, new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a user's jobs until their queue is empty
+     */
+    private static void drain(String user, Runnable job) {
+        while (job != null) {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                // a failed job must not stop the user's later jobs
+                Log.e(SessionWriter.class.getName(), "Could not write the session of " + user, e);
+            }
+
+            synchronized (SessionWriter.class) {
+                job = sQueues.get(user).poll();
+                if (job == null) {
+                    sQueues.remove(user);
+                }
+            }
+        }
+    }
+}
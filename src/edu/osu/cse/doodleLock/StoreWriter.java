@@ -0,0 +1,118 @@
+package edu.osu.cse.doodleLock;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import android.gesture.GestureLibrary;
+import android.util.Log;
+
+/**
+ * Write-behind saving of gesture libraries. Saves are queued and written on a
+ * background thread at most once per FLUSH_INTERVAL, so saving after every
+ * change never rewrites the whole file on the UI thread. Activities flush
+ * pending saves when they pause, and sync when the data must be on storage
+ * before carrying on
+ *
+ * @author David
+ *
+ */
+final class StoreWriter {
+
+    /**
+     * The longest a queued save waits before it is written, in milliseconds
+     */
+    static final long FLUSH_INTERVAL = 2000;
+
+    private static final ScheduledExecutorService sExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * The library with changes that have not been written, or null
+     */
+    private static GestureLibrary sDirty;
+
+    /**
+     * The write scheduled for sDirty, or null
+     */
+    private static Future<?> sPending;
+
+    private static final Runnable sFlush = new Runnable() {
+        public void run() {
+            GestureLibrary store;
+            synchronized (StoreWriter.class) {
+                store = sDirty;
+                sDirty = null;
+                sPending = null;
+            }
+
+            if (store != null) {
+                write(store);
+            }
+        }
+    };
+
+    private StoreWriter() {
+    }
+
+    /**
+     * Queues a library to be saved within FLUSH_INTERVAL. Saves queued before
+     * the write starts are written once
+     *
+     * @param store
+     *            The library to save
+     */
+    static synchronized void save(GestureLibrary store) {
+        if (sDirty != null && sDirty != store) {
+            // only one library is written behind, write the other one now
+            final GestureLibrary other = sDirty;
+            sExecutor.execute(new Runnable() {
+                public void run() {
+                    write(other);
+                }
+            });
+        }
+        sDirty = store;
+        if (sPending == null) {
+            sPending = sExecutor.schedule(sFlush, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts writing the queued save on the background thread without waiting
+     * for the interval
+     */
+    static synchronized void flush() {
+        if (sDirty != null) {
+            sExecutor.execute(sFlush);
+        }
+    }
+
+    /**
+     * Writes the queued save and waits until it, and every write queued before
+     * it, is on storage. Blocks, so it must not be called on the UI thread
+     */
+    static void sync() {
+        Future<?> done = sExecutor.submit(sFlush);
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(StoreWriter.class.getName(), "Could not save the gesture library", e.getCause());
+        }
+    }
+
+    /**
+     * Saves a library under its own lock, which everything that changes the
+     * library holds as well
+     */
+    private static void write(GestureLibrary store) {
+        synchronized (store) {
+            if (!store.save()) {
+                Log.e(StoreWriter.class.getName(), "Could not save the gesture library");
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package edu.osu.cse.doodleLock;
+
+import java.lang.reflect.Field;
+
+import android.gesture.GestureStroke;
+import android.util.Log;
+import edu.osu.cse.doodleLock.core.Metrics;
+
+/**
+ * Reads the duration of a stroke from the private timestamps of a
+ * GestureStroke. The field is looked up once per process and reused for every
+ * stroke
+ *
+ * @author David
+ *
+ */
+final class StrokeTimestamps {
+
+    /**
+     * The timestamps field of GestureStroke, or null if it could not be found
+     */
+    private static final Field sTimestampsField = findTimestampsField();
+
+    /**
+     * True once a stroke's duration could not be read
+     */
+    private static boolean sFellBack = false;
+
+    private StrokeTimestamps() {
+    }
+
+    /**
+     * Returns the time each point of a stroke was drawn
+     *
+     * @param stroke
+     *            The stroke to read
+     * @return Timestamps of the stroke, or null if they are unavailable
+     */
+    static long[] getTimestamps(GestureStroke stroke) {
+
+        if (sTimestampsField != null) {
+            try {
+                long[] timestamps = (long[]) sTimestampsField.get(stroke);
+                if (timestamps != null && timestamps.length > 0) {
+                    return timestamps;
+                }
+            } catch (IllegalAccessException e) {
+                Log.e(StrokeTimestamps.class.getName(), "Could not read stroke timestamps", e);
+            }
+        }
+
+        recordFallback();
+        return null;
+    }
+
+    /**
+     * Counts the fallback in Metrics, which exports it with the stage timings
+     */
+    private static synchronized void recordFallback() {
+        Metrics.countDurationFallback();
+
+        // log the first fallback only, the count tells the rest of the story
+        if (!sFellBack) {
+            sFellBack = true;
+            Log.w(StrokeTimestamps.class.getName(), "Stroke durations are unavailable, recording 0");
+        }
+    }
+
+    private static Field findTimestampsField() {
+        try {
+            Field field = GestureStroke.class.getDeclaredField("timestamps");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            Log.e(StrokeTimestamps.class.getName(), "GestureStroke has no timestamps field", e);
+        } catch (SecurityException e) {
+            Log.e(StrokeTimestamps.class.getName(), "GestureStroke timestamps are not accessible", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,261 @@
+package edu.osu.cse.doodleLock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import android.content.res.Resources;
+import android.gesture.Gesture;
+import android.gesture.GestureLibraries;
+import android.gesture.GestureLibrary;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.util.Log;
+import android.widget.TextView;
+import edu.osu.cse.doodleLock.core.UserFiles;
+
+/**
+ * Shows a thumbnail of each user's first training doodle next to their name.
+ * Thumbnails are rendered on a small pool of worker threads and kept in a
+ * process wide memory cache, bounded by the bytes of its bitmaps, and in the
+ * user's directory keyed by model version so retraining never shows an old
+ * doodle. A view that is recycled for another user before its thumbnail is
+ * ready cancels the old request
+ *
+ * @author David
+ *
+ */
+final class ThumbnailLoader {
+
+    /**
+     * Number of threads rendering thumbnails
+     */
+    static final int THREAD_COUNT = 2;
+
+    /**
+     * Fraction of the heap the memory cache may use
+     */
+    static final int MEMORY_CACHE_DIVISOR = 8;
+
+    private static final long MAX_CACHE_BYTES = Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVISOR;
+
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+    /**
+     * Thumbnails by user and model version, least recently used first
+     */
+    private static final LinkedHashMap<String, Bitmap> sBitmaps = new LinkedHashMap<String, Bitmap>(16, 0.75f, true);
+
+    private static long sCacheBytes;
+
+    private final File mRoot;
+    private final Resources mResources;
+    private final int mSize;
+    private final int mInset;
+    private final int mColor;
+
+    private final Handler mHandler = new Handler();
+
+    /**
+     * The request each view is waiting for, only touched on the UI thread
+     */
+    private final WeakHashMap<TextView, Future<?>> mRequests = new WeakHashMap<TextView, Future<?>>();
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @param resources
+     *            Resources to create drawables with
+     * @param size
+     *            Width and height of a thumbnail in pixels
+     * @param inset
+     *            Space left around the doodle in pixels
+     * @param color
+     *            Color of the doodle's strokes
+     */
+    ThumbnailLoader(File root, Resources resources, int size, int inset, int color) {
+        mRoot = root;
+        mResources = resources;
+        mSize = size;
+        mInset = inset;
+        mColor = color;
+    }
+
+    /**
+     * Shows the user's thumbnail on a list item, at once if it is in memory and
+     * otherwise once it has been loaded or rendered. Call on the UI thread
+     *
+     * @param view
+     *            The list item, tagged with the user's name
+     * @param user
+     *            Name of the user
+     * @param modelVersion
+     *            Version of the user's model
+     */
+    void bind(final TextView view, final String user, final int modelVersion) {
+
+        Future<?> previous = mRequests.remove(view);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+
+        final String key = key(user, modelVersion);
+        Bitmap bitmap = getCached(key);
+        show(view, bitmap);
+        if (bitmap != null) {
+            return;
+        }
+
+        mRequests.put(view, sExecutor.submit(new Runnable() {
+            public void run() {
+                final Bitmap loaded = load(user, modelVersion);
+                if (loaded == null) {
+                    return;
+                }
+                putCached(key, loaded);
+
+                mHandler.post(new Runnable() {
+                    public void run() {
+                        // the view may have been recycled for another user
+                        if (user.equals(view.getTag())) {
+                            mRequests.remove(view);
+                            show(view, loaded);
+                        }
+                    }
+                });
+            }
+        }));
+    }
+
+    /**
+     * Cancels every request that has not started, for when the list is gone
+     */
+    void cancelAll() {
+        for (Future<?> request : mRequests.values()) {
+            request.cancel(false);
+        }
+        mRequests.clear();
+    }
+
+    /**
+     * Empties the memory cache, for when the system is low on memory
+     */
+    static synchronized void trim() {
+        sBitmaps.clear();
+        sCacheBytes = 0;
+    }
+
+    /**
+     * Drops every cached thumbnail of a deleted user. Model versions start
+     * again at 1 for a user created under the same name, so the old
+     * thumbnails would otherwise be shown for the new user
+     *
+     * @param user
+     *            Name of the user
+     */
+    static synchronized void forget(String user) {
+        // every key of the user, see key(...)
+        String prefix = user + "/";
+
+        Iterator<Map.Entry<String, Bitmap>> iterator = sBitmaps.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Bitmap> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                sCacheBytes -= bytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void show(TextView view, Bitmap bitmap) {
+        view.setCompoundDrawablesWithIntrinsicBounds(bitmap != null ? new BitmapDrawable(mResources, bitmap) : null,
+                null, null, null);
+    }
+
+    /**
+     * Reads the thumbnail from the user's directory, or renders it from the
+     * user's first training doodle and saves it there. Runs on a worker thread
+     */
+    private Bitmap load(String user, int modelVersion) {
+
+        File file = new File(UserFiles.getUserDir(mRoot, user), "thumbnail-" + modelVersion + ".png");
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        GestureLibrary store = GestureLibraries.fromFile(UserFiles.getGestureFile(mRoot, user));
+        if (!store.load()) {
+            return null;
+        }
+
+        for (String entry : store.getGestureEntries()) {
+            ArrayList<Gesture> gestures = store.getGestures(entry);
+            if (gestures == null || gestures.isEmpty()) {
+                continue;
+            }
+
+            Bitmap bitmap = gestures.get(0).toBitmap(mSize, mSize, mInset, mColor);
+            save(bitmap, file);
+            return bitmap;
+        }
+        return null;
+    }
+
+    private static void save(Bitmap bitmap, File file) {
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // the thumbnail is rendered again next time
+            Log.w(ThumbnailLoader.class.getName(), "Could not save " + file, e);
+        }
+    }
+
+    private static synchronized Bitmap getCached(String key) {
+        return sBitmaps.get(key);
+    }
+
+    private static synchronized void putCached(String key, Bitmap bitmap) {
+
+        Bitmap old = sBitmaps.put(key, bitmap);
+        if (old != null) {
+            sCacheBytes -= bytes(old);
+        }
+        sCacheBytes += bytes(bitmap);
+
+        Iterator<Map.Entry<String, Bitmap>> iterator = sBitmaps.entrySet().iterator();
+        while (sCacheBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+            Bitmap eldest = iterator.next().getValue();
+            if (eldest != bitmap) {
+                sCacheBytes -= bytes(eldest);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long bytes(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static String key(String user, int modelVersion) {
+        return user + "/" + modelVersion;
+    }
+}
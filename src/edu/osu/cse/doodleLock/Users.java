@@ -0,0 +1,126 @@
+package edu.osu.cse.doodleLock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.util.Log;
+import edu.osu.cse.doodleLock.core.UserFiles;
+import edu.osu.cse.doodleLock.core.UserIndex;
+
+/**
+ * Process wide access to the user index. The index is only read and written
+ * on a single background thread, so changes are applied in order and the UI
+ * thread never waits for storage. The index is loaded on first use, or rebuilt
+ * from the users' directories if the file is missing
+ *
+ * @author David
+ *
+ */
+final class Users {
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * The loaded index, only touched on sExecutor
+     */
+    private static UserIndex sIndex;
+
+    private Users() {
+    }
+
+    /**
+     * Lists every user, waiting for changes queued before the call. Blocks, so
+     * it is only called off the UI thread. Empty if the caller is interrupted
+     *
+     * @param root
+     *            The root directory holding every user
+     * @return Every user, in name order
+     */
+    static List<UserIndex.Entry> list(final File root) {
+        try {
+            return sExecutor.submit(new Callable<List<UserIndex.Entry>>() {
+                public List<UserIndex.Entry> call() {
+                    return index(root).getEntries();
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(Users.class.getName(), "Could not list users", e.getCause());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Records that a user finished training and saves the index in the
+     * background
+     *
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     * @param sampleCount
+     *            Number of samples the model was trained on
+     */
+    static void trained(final File root, final String user, final int sampleCount) {
+        final long time = System.currentTimeMillis();
+        sExecutor.execute(new Runnable() {
+            public void run() {
+                index(root).trained(user, sampleCount, time);
+                save(root);
+            }
+        });
+    }
+
+    /**
+     * Removes a user and saves the index in the background
+     *
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     */
+    static void deleted(final File root, final String user) {
+        sExecutor.execute(new Runnable() {
+            public void run() {
+                if (index(root).remove(user)) {
+                    save(root);
+                }
+            }
+        });
+    }
+
+    private static synchronized UserIndex index(File root) {
+        if (sIndex != null) {
+            return sIndex;
+        }
+
+        File file = UserFiles.getUserIndexFile(root);
+        if (file.exists()) {
+            try {
+                sIndex = UserIndex.read(file);
+                return sIndex;
+            } catch (IOException e) {
+                Log.w(Users.class.getName(), "Rebuilding unreadable user index", e);
+            }
+        }
+
+        sIndex = UserIndex.rebuild(root);
+        save(root);
+        return sIndex;
+    }
+
+    private static void save(File root) {
+        try {
+            sIndex.write(UserFiles.getUserIndexFile(root));
+        } catch (IOException e) {
+            Log.e(Users.class.getName(), "Could not save the user index", e);
+        }
+    }
+}
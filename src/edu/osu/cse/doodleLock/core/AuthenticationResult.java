@@ -0,0 +1,42 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * The outcome of scoring a gesture against a doodle
+ *
+ * @author David
+ *
+ */
+public class AuthenticationResult {
+
+    /**
+     * True if the gesture was accepted
+     */
+    private final boolean accepted;
+
+    /**
+     * Natural log of the confidence the gesture matches the doodle. If the
+     * gesture was rejected before every dimension was scored, this is an upper
+     * bound on the full score
+     */
+    private final double score;
+
+    public AuthenticationResult(boolean accepted, double score) {
+        this.accepted = accepted;
+        this.score = score;
+    }
+
+    /**
+     * @return True if the gesture was accepted
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return Natural log of the confidence, negative infinity if the gesture
+     *         could never be accepted
+     */
+    public double getScore() {
+        return score;
+    }
+}
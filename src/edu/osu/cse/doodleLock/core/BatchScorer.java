@@ -0,0 +1,106 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * Scores every sample of a FeatureBatch against a GaussianModel in one pass.
+ * The scorer keeps its buffers between calls so repeated scoring does not
+ * allocate. A scorer must only be used by one thread at a time
+ *
+ * @author David
+ *
+ */
+public class BatchScorer {
+
+    /**
+     * Log confidence of each sample of the last batch scored
+     */
+    private double[] scores = new double[0];
+
+    /**
+     * Sum of the data each sample has where the model has zero variance
+     */
+    private double[] excess = new double[0];
+
+    /**
+     * Scores every sample in a batch. Unlike GaussianModel.score, every
+     * dimension of every sample is scored, so the scores of rejected samples
+     * are exact. Samples with data where the model has zero variance score
+     * negative infinity
+     *
+     * @param model
+     *            The trained model
+     * @param batch
+     *            The samples to score
+     * @return The log confidence of each sample, in the order they were added.
+     *         A sample is accepted if its score is at least LOG_THRESHOLD. The
+     *         array is reused by the next call
+     */
+    public double[] score(GaussianModel model, FeatureBatch batch) {
+
+        int size = batch.size;
+        int capacity = batch.capacity;
+        double[] values = batch.values;
+
+        if (scores.length < size) {
+            scores = new double[size];
+            excess = new double[size];
+        }
+
+        double[] scores = this.scores;
+        double[] excess = this.excess;
+        double[] means = model.means;
+        double[] variances = model.variances;
+        int modelDimensions = model.dimensions;
+        int batchDimensions = batch.dimensions;
+
+        double initial = Math.log(model.activeCount);
+        for (int j = 0; j < size; j++) {
+            scores[j] = initial;
+            excess[j] = 0.0;
+        }
+
+        // one dimension at a time over contiguous samples, with no branches in
+        // the inner loops so the JIT can vectorize them
+        for (int i = 0; i < modelDimensions; i++) {
+            int base = i * capacity;
+
+            if (i >= batchDimensions) {
+                // every sample is 0.0 here, which costs the same for each
+                if (variances[i] != 0) {
+                    double cost = means[i] * means[i] * (1.0 / (GaussianModel.TOLERANCE * 2 * variances[i]));
+                    for (int j = 0; j < size; j++) {
+                        scores[j] -= cost;
+                    }
+                }
+            } else if (variances[i] != 0) {
+                double mean = means[i];
+                double scale = 1.0 / (GaussianModel.TOLERANCE * 2 * variances[i]);
+
+                for (int j = 0; j < size; j++) {
+                    double diff = values[base + j] - mean;
+                    scores[j] -= diff * diff * scale;
+                }
+            } else {
+                // data where the variance is 0 means too many strokes
+                for (int j = 0; j < size; j++) {
+                    excess[j] += Math.abs(values[base + j]);
+                }
+            }
+        }
+
+        // data past the model's dimensions is too many strokes as well
+        for (int i = modelDimensions; i < batchDimensions; i++) {
+            int base = i * capacity;
+            for (int j = 0; j < size; j++) {
+                excess[j] += Math.abs(values[base + j]);
+            }
+        }
+
+        for (int j = 0; j < size; j++) {
+            if (excess[j] != 0) {
+                scores[j] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        return scores;
+    }
+}
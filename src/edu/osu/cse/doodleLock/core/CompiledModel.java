@@ -0,0 +1,207 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static edu.osu.cse.doodleLock.core.FeatureExtractor.FEATURES_PER_STROKE;
+
+/**
+ * A trained GaussianModel packed for scoring. The dimensions with a non-zero
+ * variance are stored in the order most likely to reject an impostor early,
+ * each with its mean and the inverse of its scale, so scoring is a multiply
+ * and add per dimension with no division and no allocation. Dimensions with a
+ * zero variance are kept in a separate list, since any data there rejects the
+ * sample outright.
+ *
+ * A compiled model never changes, so it can be shared between threads. It has
+ * to be compiled again once its model is trained further
+ *
+ * @author David
+ *
+ */
+public final class CompiledModel {
+
+    /**
+     * Number of dimensions of the model
+     */
+    private final int dimensions;
+
+    /**
+     * The log of the number of active dimensions, where every score starts
+     */
+    private final double initial;
+
+    /**
+     * Active dimensions, best first
+     */
+    private final int[] order;
+
+    /**
+     * Mean of each dimension in order
+     */
+    private final double[] means;
+
+    /**
+     * 1 / (TOLERANCE * 2 * variance) of each dimension in order
+     */
+    private final double[] scales;
+
+    /**
+     * Dimensions with a zero variance, where a sample must have no data
+     */
+    private final int[] inactive;
+
+    /**
+     * Buffer for the representation of doodles scored as strokes, one per
+     * thread
+     */
+    private static final ThreadLocal<double[]> sBuffer = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[0];
+        }
+    };
+
+    /**
+     * @param model
+     *            The trained model to compile
+     */
+    CompiledModel(GaussianModel model) {
+
+        dimensions = model.dimensions;
+        initial = Math.log(model.activeCount);
+
+        int active = 0;
+        for (int i = 0; i < dimensions; i++) {
+            if (model.variances[i] != 0) {
+                active++;
+            }
+        }
+
+        final double[] allScales = new double[dimensions];
+        final double[] allMeans = model.means;
+        Integer[] activeDims = new Integer[active];
+        inactive = new int[dimensions - active];
+
+        for (int i = 0, a = 0, z = 0; i < dimensions; i++) {
+            if (model.variances[i] != 0) {
+                allScales[i] = 1.0 / (GaussianModel.TOLERANCE * 2 * model.variances[i]);
+                activeDims[a++] = i;
+            } else {
+                inactive[z++] = i;
+            }
+        }
+
+        // the penalty for a value of 0.0 is mean^2 * scale, which measures how
+        // far a dimension's spread is from its typical value without depending
+        // on its units. Dimensions that are tight around their mean are
+        // scored first, since an impostor is most likely to be rejected there
+        Arrays.sort(activeDims, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                double costA = allMeans[a] * allMeans[a] * allScales[a];
+                double costB = allMeans[b] * allMeans[b] * allScales[b];
+                return Double.compare(costB, costA);
+            }
+        });
+
+        order = new int[active];
+        means = new double[active];
+        scales = new double[active];
+        for (int k = 0; k < active; k++) {
+            int i = activeDims[k];
+            order[k] = i;
+            means[k] = allMeans[i];
+            scales[k] = allScales[i];
+        }
+    }
+
+    /**
+     * Scores a sample in log space, stopping as soon as it can no longer reach
+     * LOG_THRESHOLD
+     *
+     * @param sample
+     *            Representation from FeatureExtractor
+     * @param length
+     *            Number of values of the sample to use
+     * @return The log confidence, an upper bound on it if the sample was
+     *         rejected early, or negative infinity if the sample has data
+     *         where the model has none
+     */
+    public double score(double[] sample, int length) {
+
+        // data where the model has none is more strokes than the user ever
+        // drew, which no other dimension can make up for
+        int[] inactive = this.inactive;
+        for (int k = 0; k < inactive.length; k++) {
+            int i = inactive[k];
+            if (i < length && sample[i] != 0) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        for (int i = dimensions; i < length; i++) {
+            if (sample[i] != 0) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        int[] order = this.order;
+        double[] means = this.means;
+        double[] scales = this.scales;
+        double score = initial;
+
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            double diff = (i < length ? sample[i] : 0.0) - means[k];
+            score -= diff * diff * scales[k];
+
+            // every dimension can only lower the score
+            if (score < GaussianModel.LOG_THRESHOLD) {
+                return score;
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * Scores strokes without allocating, once the calling thread's buffer has
+     * grown to the number of strokes
+     *
+     * @param strokes
+     *            The strokes of the doodle
+     * @return The log confidence as returned by score(double[], int)
+     */
+    public double score(Stroke[] strokes) {
+
+        int length = FEATURES_PER_STROKE * strokes.length;
+        double[] buffer = sBuffer.get();
+        if (buffer.length < length) {
+            buffer = new double[length];
+            sBuffer.set(buffer);
+        }
+
+        for (int i = 0; i < strokes.length; i++) {
+            FeatureExtractor.extractStroke(strokes[i], buffer, FEATURES_PER_STROKE * i);
+        }
+
+        return score(buffer, length);
+    }
+
+    /**
+     * @return An estimate of the heap the compiled model takes, in bytes
+     */
+    long getSizeBytes() {
+        return HeapSizes.object(4 * HeapSizes.REFERENCE + 4 + 8) + HeapSizes.array(order.length, 4)
+                + HeapSizes.array(means.length, 8) + HeapSizes.array(scales.length, 8)
+                + HeapSizes.array(inactive.length, 4);
+    }
+
+    /**
+     * @param score
+     *            A score returned by score
+     * @return True if the score passes the threshold
+     */
+    public static boolean isAccepted(double score) {
+        return score >= GaussianModel.LOG_THRESHOLD;
+    }
+}
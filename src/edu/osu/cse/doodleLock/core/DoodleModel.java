@@ -0,0 +1,56 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A matching engine trained from a user's doodles. Each user's model is saved
+ * with its engine, so users can be trained with different engines
+ *
+ * @author David
+ *
+ */
+public interface DoodleModel {
+
+    /**
+     * Adds a single training sample
+     *
+     * @param strokes
+     *            The strokes of the sample
+     */
+    void addSample(Stroke[] strokes);
+
+    /**
+     * @return The number of training samples in the model
+     */
+    int getSampleCount();
+
+    /**
+     * Scores an attempt against the training samples
+     *
+     * @param strokes
+     *            The strokes of the attempt
+     * @return The decision along with the log confidence
+     */
+    AuthenticationResult score(Stroke[] strokes);
+
+    /**
+     * @return The ModelFiles engine id written with the model
+     */
+    int getEngine();
+
+    /**
+     * @return An estimate of the heap the model takes, in bytes
+     */
+    long getSizeBytes();
+
+    /**
+     * Writes the trained model, read back by the engine's read method
+     *
+     * @param out
+     *            Stream to write to
+     * @throws IOException
+     *             If the model could not be written
+     */
+    void write(DataOutputStream out) throws IOException;
+}
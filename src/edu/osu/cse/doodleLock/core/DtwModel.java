@@ -0,0 +1,451 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Matches doodles by the shape of their strokes rather than summary numbers.
+ * Every stroke is resampled to RESAMPLE_POINTS evenly spaced points and each
+ * training sample is kept as a template. An attempt is compared to the
+ * templates with the same number of strokes using dynamic time warping
+ * limited to a Sakoe-Chiba band. Cheap lower bounds (LB_Kim, then LB_Keogh)
+ * rule out most templates before any full warping distance is computed, and
+ * the warping itself stops once it cannot beat the best template so far.
+ *
+ * An attempt is accepted if its distance to the nearest template is at most
+ * the threshold, THRESHOLD_SCALE times the largest distance from a training
+ * sample to its nearest other training sample, and never less than
+ * MIN_THRESHOLD. The score is the log of threshold / distance, so accepted
+ * attempts score LOG_THRESHOLD or more. The threshold needs at least two
+ * training samples with the same number of strokes, see isTrained()
+ *
+ * @author David
+ *
+ */
+public class DtwModel implements DoodleModel {
+
+    /**
+     * Number of points each stroke is resampled to
+     */
+    public static final int RESAMPLE_POINTS = 32;
+
+    /**
+     * How many points a warping path may stray from the diagonal
+     */
+    public static final int BAND = 3;
+
+    /**
+     * How much further than the training samples are from each other an
+     * attempt may be and still be accepted
+     */
+    public static final double THRESHOLD_SCALE = 2.0;
+
+    /**
+     * The smallest threshold, a squared distance of one pixel per resampled
+     * point, so near identical training samples still leave room to accept
+     */
+    public static final double MIN_THRESHOLD = RESAMPLE_POINTS;
+
+    /**
+     * The lowest score that is accepted
+     */
+    public static final double LOG_THRESHOLD = 0.0;
+
+    /**
+     * A resampled training sample with the envelope used by LB_Keogh
+     */
+    static class Template {
+
+        /**
+         * Resampled points of each stroke as x, y pairs
+         */
+        final float[][] points;
+
+        /**
+         * Largest and smallest x and y within BAND of each point, as x, y
+         * pairs
+         */
+        final float[][] upper;
+        final float[][] lower;
+
+        Template(float[][] points) {
+            this.points = points;
+            upper = new float[points.length][];
+            lower = new float[points.length][];
+
+            for (int s = 0; s < points.length; s++) {
+                upper[s] = new float[2 * RESAMPLE_POINTS];
+                lower[s] = new float[2 * RESAMPLE_POINTS];
+
+                for (int i = 0; i < RESAMPLE_POINTS; i++) {
+                    int from = Math.max(0, i - BAND);
+                    int to = Math.min(RESAMPLE_POINTS - 1, i + BAND);
+
+                    for (int c = 0; c < 2; c++) {
+                        float max = Float.NEGATIVE_INFINITY;
+                        float min = Float.POSITIVE_INFINITY;
+                        for (int j = from; j <= to; j++) {
+                            max = Math.max(max, points[s][2 * j + c]);
+                            min = Math.min(min, points[s][2 * j + c]);
+                        }
+                        upper[s][2 * i + c] = max;
+                        lower[s][2 * i + c] = min;
+                    }
+                }
+            }
+        }
+    }
+
+    private final ArrayList<Template> templates = new ArrayList<Template>();
+
+    /**
+     * Largest accepted distance, recomputed when samples are added
+     */
+    private double threshold;
+
+    private boolean thresholdDirty = false;
+
+    /**
+     * Rows of the warping matrix, reused by every comparison. Only used while
+     * holding the model's lock
+     */
+    private final double[] previousRow = new double[RESAMPLE_POINTS];
+    private final double[] currentRow = new double[RESAMPLE_POINTS];
+
+    public synchronized void addSample(Stroke[] strokes) {
+        templates.add(new Template(resample(strokes)));
+        thresholdDirty = true;
+    }
+
+    public synchronized int getSampleCount() {
+        return templates.size();
+    }
+
+    /**
+     * @return True if at least two training samples have the same number of
+     *         strokes, the fewest the threshold can be learned from
+     */
+    public synchronized boolean isTrained() {
+        for (int i = 0; i < templates.size(); i++) {
+            for (int j = i + 1; j < templates.size(); j++) {
+                if (templates.get(i).points.length == templates.get(j).points.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int getEngine() {
+        return ModelFiles.ENGINE_DTW;
+    }
+
+    /**
+     * The templates are all the engine needs to score, so its size grows with
+     * the number of training samples
+     */
+    public synchronized long getSizeBytes() {
+        long size = HeapSizes.object(HeapSizes.REFERENCE + 8 + 1)
+                + HeapSizes.object(HeapSizes.REFERENCE + 2 * 4) + HeapSizes.array(templates.size(), HeapSizes.REFERENCE);
+
+        for (Template template : templates) {
+            size += HeapSizes.object(3 * HeapSizes.REFERENCE) + 3 * HeapSizes.array(template.points.length, HeapSizes.REFERENCE)
+                    + 3L * template.points.length * HeapSizes.array(2 * RESAMPLE_POINTS, 4);
+        }
+        return size;
+    }
+
+    public synchronized AuthenticationResult score(Stroke[] strokes) {
+
+        if (thresholdDirty) {
+            threshold = computeThreshold();
+            thresholdDirty = false;
+        }
+
+        float[][] attempt = resample(strokes);
+
+        // distances at or above the limit can never be accepted, and the limit
+        // drops to the best distance found so far
+        double limit = threshold;
+        double best = Double.POSITIVE_INFINITY;
+
+        for (Template template : templates) {
+            double distance = distance(attempt, template, limit);
+            if (distance < best) {
+                best = distance;
+            }
+            if (distance <= limit) {
+                limit = distance;
+            }
+        }
+
+        // when rejected, pruned templates are only known to be at least best
+        // away, so the score is an upper bound
+        return new AuthenticationResult(best <= threshold, confidence(best));
+    }
+
+    /**
+     * Writes the threshold and the resampled templates
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+
+        if (thresholdDirty) {
+            threshold = computeThreshold();
+            thresholdDirty = false;
+        }
+
+        out.writeInt(RESAMPLE_POINTS);
+        out.writeInt(BAND);
+        out.writeDouble(THRESHOLD_SCALE);
+        out.writeDouble(threshold);
+        out.writeInt(templates.size());
+
+        for (Template template : templates) {
+            out.writeInt(template.points.length);
+            for (float[] stroke : template.points) {
+                for (float value : stroke) {
+                    out.writeFloat(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a model previously written by write
+     *
+     * @param in
+     *            Stream to read from
+     * @return The loaded model
+     * @throws IOException
+     *             If the model was trained with different parameters
+     */
+    public static DtwModel read(DataInputStream in) throws IOException {
+
+        if (in.readInt() != RESAMPLE_POINTS || in.readInt() != BAND
+                || in.readDouble() != THRESHOLD_SCALE) {
+            throw new IOException("Model was trained with different parameters");
+        }
+
+        DtwModel model = new DtwModel();
+        // older models could be saved with a threshold of 0
+        model.threshold = Math.max(in.readDouble(), MIN_THRESHOLD);
+
+        int count = in.readInt();
+        for (int t = 0; t < count; t++) {
+            float[][] points = new float[in.readInt()][2 * RESAMPLE_POINTS];
+            for (float[] stroke : points) {
+                for (int i = 0; i < stroke.length; i++) {
+                    stroke[i] = in.readFloat();
+                }
+            }
+            model.templates.add(new Template(points));
+        }
+
+        return model;
+    }
+
+    private double confidence(double distance) {
+        return Math.log(threshold / distance);
+    }
+
+    /**
+     * @return THRESHOLD_SCALE times the largest distance from a template to
+     *         its nearest other template with the same stroke count, at least
+     *         MIN_THRESHOLD
+     */
+    private double computeThreshold() {
+
+        double largest = 0.0;
+
+        for (Template template : templates) {
+            double nearest = Double.POSITIVE_INFINITY;
+            for (Template other : templates) {
+                if (other != template) {
+                    nearest = Math.min(nearest, distance(template.points, other, nearest));
+                }
+            }
+            if (nearest != Double.POSITIVE_INFINITY) {
+                largest = Math.max(largest, nearest);
+            }
+        }
+
+        return Math.max(THRESHOLD_SCALE * largest, MIN_THRESHOLD);
+    }
+
+    /**
+     * Warping distance between an attempt and a template, summed over strokes
+     *
+     * @param limit
+     *            Distances above this are not needed exactly
+     * @return The distance, or a lower bound on it above limit. Positive
+     *         infinity if the stroke counts differ
+     */
+    double distance(float[][] attempt, Template template, double limit) {
+
+        if (attempt.length != template.points.length) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // LB_Kim: every warping path matches the first and the last points
+        double bound = 0.0;
+        for (int s = 0; s < attempt.length; s++) {
+            bound += squaredDistance(attempt[s], 0, template.points[s], 0)
+                    + squaredDistance(attempt[s], RESAMPLE_POINTS - 1, template.points[s], RESAMPLE_POINTS - 1);
+        }
+        if (bound > limit) {
+            return bound;
+        }
+
+        // LB_Keogh: every point is matched to a template point within the band
+        bound = 0.0;
+        for (int s = 0; s < attempt.length; s++) {
+            bound += lbKeogh(attempt[s], template.upper[s], template.lower[s]);
+        }
+        if (bound > limit) {
+            return bound;
+        }
+
+        double total = 0.0;
+        for (int s = 0; s < attempt.length; s++) {
+            total += dtw(attempt[s], template.points[s], limit - total);
+            if (total > limit) {
+                return total;
+            }
+        }
+        return total;
+    }
+
+    private static double lbKeogh(float[] points, float[] upper, float[] lower) {
+        double sum = 0.0;
+        for (int i = 0; i < 2 * RESAMPLE_POINTS; i++) {
+            float value = points[i];
+            if (value > upper[i]) {
+                sum += (value - upper[i]) * (value - upper[i]);
+            } else if (value < lower[i]) {
+                sum += (lower[i] - value) * (lower[i] - value);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Dynamic time warping distance between two resampled strokes within the
+     * Sakoe-Chiba band, abandoned once every path costs more than limit
+     */
+    private double dtw(float[] a, float[] b, double limit) {
+
+        int n = RESAMPLE_POINTS;
+        double[] previous = previousRow;
+        double[] current = currentRow;
+        double infinity = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i - BAND);
+            int to = Math.min(n - 1, i + BAND);
+            double rowMin = infinity;
+
+            for (int j = 0; j < n; j++) {
+                if (j < from || j > to) {
+                    current[j] = infinity;
+                    continue;
+                }
+
+                double cost = squaredDistance(a, i, b, j);
+                double best;
+                if (i == 0 && j == 0) {
+                    best = 0.0;
+                } else {
+                    best = infinity;
+                    if (i > 0) {
+                        best = Math.min(best, previous[j]);
+                        if (j > 0) {
+                            best = Math.min(best, previous[j - 1]);
+                        }
+                    }
+                    if (j > 0) {
+                        best = Math.min(best, current[j - 1]);
+                    }
+                }
+
+                current[j] = cost + best;
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            // every path passes through this row
+            if (rowMin > limit) {
+                return rowMin;
+            }
+
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[n - 1];
+    }
+
+    private static double squaredDistance(float[] a, int i, float[] b, int j) {
+        double dx = a[2 * i] - b[2 * j];
+        double dy = a[2 * i + 1] - b[2 * j + 1];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Resamples every stroke to RESAMPLE_POINTS points evenly spaced along
+     * its path
+     */
+    static float[][] resample(Stroke[] strokes) {
+
+        float[][] resampled = new float[strokes.length][];
+
+        for (int s = 0; s < strokes.length; s++) {
+            float[] points = strokes[s].getPoints();
+            float[] out = new float[2 * RESAMPLE_POINTS];
+            float step = strokes[s].getLength() / (RESAMPLE_POINTS - 1);
+
+            out[0] = points[0];
+            out[1] = points[1];
+            int count = 1;
+
+            if (step > 0) {
+                float x = points[0];
+                float y = points[1];
+                float travelled = 0f;
+
+                for (int i = 2; i < points.length && count < RESAMPLE_POINTS - 1; i += 2) {
+                    float nextX = points[i];
+                    float nextY = points[i + 1];
+                    float segment = (float) Math.sqrt((nextX - x) * (nextX - x) + (nextY - y) * (nextY - y));
+
+                    // place points along this segment until it runs out
+                    while (segment > 0 && travelled + segment >= step && count < RESAMPLE_POINTS - 1) {
+                        float t = (step - travelled) / segment;
+                        x += t * (nextX - x);
+                        y += t * (nextY - y);
+                        out[2 * count] = x;
+                        out[2 * count + 1] = y;
+                        count++;
+                        segment = (float) Math.sqrt((nextX - x) * (nextX - x) + (nextY - y) * (nextY - y));
+                        travelled = 0f;
+                    }
+
+                    travelled += segment;
+                    x = nextX;
+                    y = nextY;
+                }
+            }
+
+            // the last point always ends the stroke, and pads out rounding
+            for (; count < RESAMPLE_POINTS; count++) {
+                out[2 * count] = points[points.length - 2];
+                out[2 * count + 1] = points[points.length - 1];
+            }
+
+            resampled[s] = out;
+        }
+
+        return resampled;
+    }
+}
@@ -0,0 +1,97 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Enrolls a user from a complete set of training samples in one step, writing
+ * the same files a training session leaves behind: the user's GestureLibrary
+ * file and trained model. Users enrolled this way can be authenticated and
+ * retrained like any other
+ *
+ * @author David
+ *
+ */
+public final class Enrollment {
+
+    /**
+     * The fewest training samples a user is enrolled with
+     */
+    public static final int MIN_SAMPLES = 5;
+
+    /**
+     * The most training samples a user is enrolled with
+     */
+    public static final int MAX_SAMPLES = 10;
+
+    private Enrollment() {
+    }
+
+    /**
+     * Trains a model and writes the user's files. Safe to call for different
+     * users at the same time
+     *
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user, who must not be enrolled already
+     * @param samples
+     *            Between MIN_SAMPLES and MAX_SAMPLES training samples
+     * @param model
+     *            Empty model to train
+     * @return The trained model
+     * @throws IllegalArgumentException
+     *             If the user or the number of samples is not valid, or the
+     *             samples cannot train the model
+     * @throws IOException
+     *             If the user's files could not be written
+     */
+    public static DoodleModel enroll(File root, String user, List<Stroke[]> samples, DoodleModel model)
+            throws IOException {
+
+        if (user.length() == 0 || user.startsWith(".") || user.indexOf(File.separatorChar) >= 0) {
+            throw new IllegalArgumentException("Invalid user name \"" + user + "\"");
+        }
+        if (samples.size() < MIN_SAMPLES || samples.size() > MAX_SAMPLES) {
+            throw new IllegalArgumentException(samples.size() + " samples, between " + MIN_SAMPLES + " and "
+                    + MAX_SAMPLES + " are needed");
+        }
+        for (Stroke[] sample : samples) {
+            if (sample.length == 0) {
+                throw new IllegalArgumentException("A sample has no strokes");
+            }
+        }
+
+        File userDir = UserFiles.getUserDir(root, user);
+        File gestureFile = UserFiles.getGestureFile(root, user);
+        if (userDir.exists() || gestureFile.exists()) {
+            throw new IllegalArgumentException(user + " is already enrolled");
+        }
+
+        for (Stroke[] sample : samples) {
+            model.addSample(sample);
+        }
+        if (model instanceof DtwModel && !((DtwModel) model).isTrained()) {
+            throw new IllegalArgumentException("No two samples have the same number of strokes");
+        }
+
+        if (!userDir.mkdirs()) {
+            throw new IOException("Could not create " + userDir);
+        }
+
+        File modelFile = UserFiles.getModelFile(root, user);
+        try {
+            GestureLibraryWriter.write(gestureFile, samples, System.currentTimeMillis());
+            ModelFiles.save(model, modelFile);
+        } catch (IOException e) {
+            // leave nothing behind that would look like an enrolled user
+            modelFile.delete();
+            gestureFile.delete();
+            userDir.delete();
+            throw e;
+        }
+
+        return model;
+    }
+}
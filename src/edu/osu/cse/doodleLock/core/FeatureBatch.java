@@ -0,0 +1,102 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * Many samples packed dimension by dimension (structure of arrays) for
+ * scoring in one pass with BatchScorer. Value i of sample j is stored at
+ * values[i * capacity + j], so the samples for one dimension are contiguous.
+ * The batch has as many dimensions as its longest sample, shorter samples are
+ * padded with 0.0. A batch can be cleared and refilled without reallocating,
+ * and once filled can be scored from several threads at once
+ *
+ * @author David
+ *
+ */
+public class FeatureBatch {
+
+    /**
+     * The packed samples
+     */
+    double[] values;
+
+    /**
+     * Number of dimensions, the length of the longest sample
+     */
+    int dimensions;
+
+    /**
+     * Number of samples the arrays have room for
+     */
+    int capacity;
+
+    /**
+     * Number of samples in the batch
+     */
+    int size;
+
+    /**
+     * @param capacity
+     *            Number of samples to make room for
+     */
+    public FeatureBatch(int capacity) {
+        allocate(Math.max(capacity, 1), 0);
+    }
+
+    /**
+     * Adds a sample to the batch, growing it if needed
+     *
+     * @param sample
+     *            Representation from FeatureExtractor
+     */
+    public void add(double[] sample) {
+
+        if (size == capacity || sample.length > dimensions) {
+            grow(size == capacity ? capacity * 2 : capacity, Math.max(dimensions, sample.length));
+        }
+
+        for (int i = 0; i < sample.length; i++) {
+            values[i * capacity + size] = sample[i];
+        }
+        // the slots may hold a sample from before the batch was cleared
+        for (int i = sample.length; i < dimensions; i++) {
+            values[i * capacity + size] = 0.0;
+        }
+        size++;
+    }
+
+    /**
+     * Empties the batch, keeping its arrays and dimensions for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return Number of samples in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    private void allocate(int newCapacity, int newDimensions) {
+        values = new double[newDimensions * newCapacity];
+        capacity = newCapacity;
+        dimensions = newDimensions;
+    }
+
+    /**
+     * Reallocates the arrays, samples already added are 0.0 in any new
+     * dimensions
+     */
+    private void grow(int newCapacity, int newDimensions) {
+
+        double[] old = values;
+        int oldCapacity = capacity;
+        int oldDimensions = dimensions;
+
+        allocate(newCapacity, newDimensions);
+
+        for (int i = 0; i < oldDimensions; i++) {
+            System.arraycopy(old, i * oldCapacity, values, i * capacity, size);
+        }
+    }
+}
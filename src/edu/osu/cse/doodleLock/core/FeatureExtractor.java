@@ -0,0 +1,65 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * Converts strokes to the numerical representation used by GaussianModel
+ *
+ * @author David
+ *
+ */
+public final class FeatureExtractor {
+
+    /**
+     * The number of values describing each stroke
+     */
+    public static final int FEATURES_PER_STROKE = 8;
+
+    private FeatureExtractor() {
+    }
+
+    /**
+     * Converts strokes to an arbitrary numerical representation
+     *
+     * @param strokes
+     *            The strokes to convert
+     * @return FEATURES_PER_STROKE values for each stroke, in stroke order
+     */
+    public static double[] extract(Stroke[] strokes) {
+
+        double[] values = new double[FEATURES_PER_STROKE * strokes.length];
+
+        for (int i = 0; i < strokes.length; i++) {
+            extractStroke(strokes[i], values, FEATURES_PER_STROKE * i);
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes the representation of a single stroke
+     *
+     * @param stroke
+     *            The stroke to convert
+     * @param values
+     *            Array to write to
+     * @param offset
+     *            Index of the first of the FEATURES_PER_STROKE values to write
+     */
+    public static void extractStroke(Stroke stroke, double[] values, int offset) {
+        // 0 - Stroke Length
+        values[offset + 0] = stroke.getLength();
+        // 1 - Stroke start point - x
+        values[offset + 1] = stroke.getStartX();
+        // 2 - Stroke start point - y
+        values[offset + 2] = stroke.getStartY();
+        // 3 - Stroke end point - x
+        values[offset + 3] = stroke.getEndX();
+        // 4 - Stroke end point - y
+        values[offset + 4] = stroke.getEndY();
+        // 5 - Stroke width
+        values[offset + 5] = stroke.getWidth();
+        // 6 - Stroke height
+        values[offset + 6] = stroke.getHeight();
+        // 7 - Stroke Duration (time)
+        values[offset + 7] = stroke.getDuration();
+    }
+}
@@ -0,0 +1,433 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static edu.osu.cse.doodleLock.core.FeatureExtractor.FEATURES_PER_STROKE;
+
+/**
+ * Models each dimension of a doodle's numerical representation as a Gaussian
+ * over the training samples. The model only has dimensions for as many strokes
+ * as the longest training sample, a shorter sample counts as 0.0 in the
+ * dimensions of the strokes it is missing.
+ *
+ * A model can be compacted down to its sample count, means and variances,
+ * which is all scoring and further training need. Its size then depends only
+ * on its dimensions, however many samples it was trained on. Loaded models
+ * start out compact
+ *
+ * @author David
+ *
+ */
+public class GaussianModel implements DoodleModel {
+
+    /**
+     * The confidence threshold at which to pass/fail auth Double between 0.0
+     * and 1.0
+     */
+    public static final double THRESHOLD = 0.001;
+
+    /**
+     * The natural log of THRESHOLD, used when scoring in log space
+     */
+    public static final double LOG_THRESHOLD = Math.log(THRESHOLD);
+
+    /**
+     * An integer representing how "loosely" the algorithm will accept Value
+     * should be between 1 and 10, 1 = strict, 10 = lenient
+     */
+    public static final int TOLERANCE = 5;
+
+    /**
+     * The weight an accepted attempt gets when the model adapts to it. Older
+     * attempts and the training samples fade by 1 - ADAPTATION_RATE with each
+     * adaptation
+     */
+    public static final double ADAPTATION_RATE = 0.05;
+
+    /**
+     * Fraction of a dimension's squared differences below which removing a
+     * sample is taken to have cancelled them down to rounding error
+     */
+    private static final double CANCELLATION = 1e-9;
+
+    /**
+     * Contains numerical representation of training samples added to this
+     * instance
+     */
+    ArrayList<double[]> numericalRep = new ArrayList<double[]>();
+
+    /**
+     * The number of dimensions, FEATURES_PER_STROKE for each stroke of the
+     * longest training sample
+     */
+    int dimensions = 0;
+
+    /**
+     * The mean of each dimension
+     */
+    double[] means = new double[0];
+
+    /**
+     * The variance of each dimension
+     */
+    double[] variances = new double[0];
+
+    /**
+     * The running sum of squared differences from the mean of each dimension,
+     * used to update the variances one sample at a time (Welford's method).
+     * Null while the model is compact, it is variances * sampleCount
+     */
+    double[] squaredDiffs = new double[0];
+
+    /**
+     * The number of training samples the means and variances were computed
+     * over. A loaded model has samples counted here that are not in
+     * numericalRep
+     */
+    int sampleCount = 0;
+
+    /**
+     * The number of dimensions with a non-zero variance
+     */
+    int activeCount = 0;
+
+    /**
+     * The model packed for scoring, or null if it has changed since it was
+     * last compiled
+     */
+    private CompiledModel compiled;
+
+    /**
+     * Adds a single training sample, updating the mean and variance of each
+     * dimension without revisiting the other samples
+     *
+     * @param sample
+     *            Representation from FeatureExtractor
+     */
+    public void addSample(double[] sample) {
+
+        numericalRep.add(sample);
+        compiled = null;
+        restoreSquaredDiffs();
+
+        // earlier samples had 0.0 in the new dimensions, which leaves their
+        // means and squared differences at 0.0
+        if (sample.length > dimensions) {
+            setDimensions(sample.length);
+        }
+
+        int count = ++sampleCount;
+        activeCount = 0;
+
+        for (int i = 0; i < dimensions; i++) {
+
+            double value = i < sample.length ? sample[i] : 0.0;
+            double delta = value - means[i];
+            means[i] += delta / count;
+            squaredDiffs[i] += delta * (value - means[i]);
+
+            variances[i] = squaredDiffs[i] / count;
+
+            if (variances[i] != 0) {
+                activeCount++;
+            }
+        }
+
+    }
+
+    /**
+     * Removes a single training sample by reversing the update made when it
+     * was added. Where that cancels a dimension's squared differences down to
+     * rounding error, such as a stroke slot no remaining sample uses, the
+     * dimension is computed again from the remaining samples if they are all
+     * still held, so it goes back to exactly 0.0. Otherwise it is set to 0.0
+     *
+     * @param index
+     *            Position of the sample in the order it was added to this
+     *            instance since it was last compacted
+     */
+    public void removeSample(int index) {
+
+        double[] sample = numericalRep.remove(index);
+        compiled = null;
+        restoreSquaredDiffs();
+
+        int count = --sampleCount;
+        boolean held = numericalRep.size() == count;
+        activeCount = 0;
+
+        for (int i = 0; i < dimensions; i++) {
+
+            if (count == 0) {
+                means[i] = 0.0;
+                squaredDiffs[i] = 0.0;
+                variances[i] = 0.0;
+                continue;
+            }
+
+            // where every sample has the same value the rest keep the mean
+            double oldSquaredDiffs = squaredDiffs[i];
+            if (oldSquaredDiffs != 0) {
+                double value = i < sample.length ? sample[i] : 0.0;
+                double oldMean = means[i];
+                means[i] = (oldMean * (count + 1) - value) / count;
+                squaredDiffs[i] -= (value - oldMean) * (value - means[i]);
+
+                if (squaredDiffs[i] <= oldSquaredDiffs * CANCELLATION) {
+                    if (held) {
+                        recompute(i);
+                    } else {
+                        squaredDiffs[i] = 0.0;
+                    }
+                }
+            }
+
+            variances[i] = squaredDiffs[i] / count;
+
+            if (variances[i] != 0) {
+                activeCount++;
+            }
+        }
+
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Moves the means and variances towards an accepted attempt with an
+     * exponential decay, so the model follows a doodle that drifts over time.
+     * Only dimensions with a non-zero variance adapt, which keeps the strokes
+     * the model accepts the same. The sample count is left alone since the
+     * attempt is not a training sample.
+     *
+     * The adapted model is a compact copy and this model is left as it was, so
+     * it can keep being scored on other threads until the copy replaces it
+     *
+     * @param sample
+     *            Representation of an accepted attempt from FeatureExtractor
+     * @param rate
+     *            Weight of the attempt, between 0 and 1
+     * @return The adapted copy
+     */
+    public GaussianModel adapt(double[] sample, double rate) {
+
+        GaussianModel adapted = new GaussianModel();
+        adapted.dimensions = dimensions;
+        adapted.means = means.clone();
+        adapted.variances = variances.clone();
+        adapted.squaredDiffs = null;
+        adapted.sampleCount = sampleCount;
+        adapted.activeCount = activeCount;
+
+        for (int i = 0; i < dimensions; i++) {
+            if (variances[i] == 0) {
+                continue;
+            }
+
+            double value = i < sample.length ? sample[i] : 0.0;
+            double delta = value - means[i];
+            adapted.means[i] += rate * delta;
+            adapted.variances[i] = (1 - rate) * (variances[i] + rate * delta * delta);
+        }
+
+        return adapted;
+    }
+
+    /**
+     * Drops the training samples and everything else scoring does not need.
+     * Samples added before this can no longer be removed
+     */
+    public void compact() {
+        numericalRep = new ArrayList<double[]>(0);
+        squaredDiffs = null;
+    }
+
+    public long getSizeBytes() {
+        long size = HeapSizes.object(5 * HeapSizes.REFERENCE + 3 * 4);
+        size += HeapSizes.array(means.length, 8) + HeapSizes.array(variances.length, 8);
+        if (squaredDiffs != null) {
+            size += HeapSizes.array(squaredDiffs.length, 8);
+        }
+
+        size += HeapSizes.object(HeapSizes.REFERENCE + 2 * 4) + HeapSizes.array(numericalRep.size(), HeapSizes.REFERENCE);
+        for (double[] sample : numericalRep) {
+            size += HeapSizes.array(sample.length, 8);
+        }
+
+        CompiledModel model = compiled;
+        if (model != null) {
+            size += model.getSizeBytes();
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of dimensions, FEATURES_PER_STROKE for each stroke of
+     *         the longest training sample
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Scores a sample against the training values in log space. Scoring stops
+     * as soon as the sample can no longer reach THRESHOLD
+     *
+     * @param sample
+     *            Representation from FeatureExtractor
+     * @return The decision along with the log confidence
+     */
+    public AuthenticationResult score(double[] sample) {
+        double score = compile().score(sample, sample.length);
+        return new AuthenticationResult(CompiledModel.isAccepted(score), score);
+    }
+
+    /**
+     * Packs the model for scoring. The compiled model is kept until the model
+     * changes
+     *
+     * @return The compiled model
+     */
+    public CompiledModel compile() {
+        CompiledModel model = compiled;
+        if (model == null) {
+            model = new CompiledModel(this);
+            compiled = model;
+        }
+        return model;
+    }
+
+    public void addSample(Stroke[] strokes) {
+        addSample(FeatureExtractor.extract(strokes));
+    }
+
+    public AuthenticationResult score(Stroke[] strokes) {
+        double score = compile().score(strokes);
+        return new AuthenticationResult(CompiledModel.isAccepted(score), score);
+    }
+
+    public int getEngine() {
+        return ModelFiles.ENGINE_GAUSSIAN;
+    }
+
+    /**
+     * Writes the number of dimensions, parameters, sample count, means and
+     * variances
+     */
+    public void write(DataOutputStream out) throws IOException {
+
+        out.writeInt(dimensions);
+        out.writeInt(TOLERANCE);
+        out.writeDouble(THRESHOLD);
+        out.writeInt(sampleCount);
+
+        for (int i = 0; i < dimensions; i++) {
+            out.writeDouble(means[i]);
+            out.writeDouble(variances[i]);
+        }
+    }
+
+    /**
+     * Reads a model previously written by write. Models saved with a slot for
+     * every one of 12 strokes lose the trailing slots no sample used
+     *
+     * @param in
+     *            Stream to read from
+     * @return The loaded model
+     * @throws IOException
+     *             If the model was trained with different parameters
+     */
+    public static GaussianModel read(DataInputStream in) throws IOException {
+
+        GaussianModel model = new GaussianModel();
+
+        int dimensions = in.readInt();
+        if (dimensions < 0 || dimensions % FEATURES_PER_STROKE != 0 || in.readInt() != TOLERANCE
+                || in.readDouble() != THRESHOLD) {
+            throw new IOException("Model was trained with different parameters");
+        }
+
+        int count = in.readInt();
+        model.setDimensions(dimensions);
+
+        for (int i = 0; i < dimensions; i++) {
+            model.means[i] = in.readDouble();
+            model.variances[i] = in.readDouble();
+
+            if (model.variances[i] != 0) {
+                model.activeCount++;
+            }
+        }
+
+        model.sampleCount = count;
+
+        // a slot with every mean and variance at 0.0 is the same as no slot
+        int used = dimensions;
+        while (used > 0 && model.means[used - 1] == 0 && model.variances[used - 1] == 0) {
+            used--;
+        }
+        model.setDimensions((used + FEATURES_PER_STROKE - 1) / FEATURES_PER_STROKE * FEATURES_PER_STROKE);
+        model.compact();
+
+        return model;
+    }
+
+    /**
+     * Resizes the arrays, new dimensions start at 0.0
+     */
+    private void setDimensions(int newDimensions) {
+        means = Arrays.copyOf(means, newDimensions);
+        variances = Arrays.copyOf(variances, newDimensions);
+        if (squaredDiffs != null) {
+            squaredDiffs = Arrays.copyOf(squaredDiffs, newDimensions);
+        }
+        dimensions = newDimensions;
+        compiled = null;
+    }
+
+    /**
+     * Computes the mean and squared differences of one dimension from the held
+     * samples in two passes, with no residue from earlier updates
+     *
+     * @param i
+     *            The dimension
+     */
+    private void recompute(int i) {
+
+        int count = numericalRep.size();
+
+        double sum = 0.0;
+        for (double[] sample : numericalRep) {
+            sum += i < sample.length ? sample[i] : 0.0;
+        }
+        double mean = sum / count;
+
+        double squares = 0.0;
+        for (double[] sample : numericalRep) {
+            double diff = (i < sample.length ? sample[i] : 0.0) - mean;
+            squares += diff * diff;
+        }
+
+        means[i] = mean;
+        squaredDiffs[i] = squares;
+    }
+
+    /**
+     * Brings back the squared differences of a compact model before training
+     * it further
+     */
+    private void restoreSquaredDiffs() {
+        if (squaredDiffs == null) {
+            squaredDiffs = new double[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                squaredDiffs[i] = variances[i] * sampleCount;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Reads the files written by android.gesture.GestureLibrary without depending
+ * on Android, so saved training gestures can be used on any JVM
+ *
+ * @author David
+ *
+ */
+public final class GestureLibraryReader {
+
+    /**
+     * The only file format version GestureLibrary writes
+     */
+    static final short FILE_FORMAT_VERSION = 1;
+
+    private GestureLibraryReader() {
+    }
+
+    /**
+     * Reads every entry of a gesture library file
+     *
+     * @param file
+     *            The file to read
+     * @return The gestures of each entry, by entry name
+     * @throws IOException
+     *             If the file could not be read or is not a gesture library
+     */
+    public static LinkedHashMap<String, ArrayList<Stroke[]>> read(File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads every entry of a gesture library
+     *
+     * @param stream
+     *            The library, left open
+     * @return The gestures of each entry, by entry name
+     * @throws IOException
+     *             If the stream could not be read or is not a gesture library
+     */
+    public static LinkedHashMap<String, ArrayList<Stroke[]>> read(InputStream stream) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+        short version = in.readShort();
+        if (version != FILE_FORMAT_VERSION) {
+            throw new IOException("Unsupported gesture library version " + version);
+        }
+
+        int entryCount = in.readInt();
+        LinkedHashMap<String, ArrayList<Stroke[]>> entries = new LinkedHashMap<String, ArrayList<Stroke[]>>();
+
+        for (int i = 0; i < entryCount; i++) {
+            String name = in.readUTF();
+            int gestureCount = in.readInt();
+
+            ArrayList<Stroke[]> gestures = new ArrayList<Stroke[]>(gestureCount);
+            for (int j = 0; j < gestureCount; j++) {
+                gestures.add(readGesture(in));
+            }
+            entries.put(name, gestures);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads every gesture of a gesture library file, regardless of entry
+     *
+     * @param file
+     *            The file to read
+     * @return Every gesture in the file
+     * @throws IOException
+     *             If the file could not be read or is not a gesture library
+     */
+    public static ArrayList<Stroke[]> readGestures(File file) throws IOException {
+
+        ArrayList<Stroke[]> gestures = new ArrayList<Stroke[]>();
+        for (ArrayList<Stroke[]> entry : read(file).values()) {
+            gestures.addAll(entry);
+        }
+        return gestures;
+    }
+
+    /**
+     * Reads a single gesture in the format written by Gesture.serialize
+     *
+     * @param in
+     *            The stream to read from
+     * @return The strokes of the gesture
+     * @throws IOException
+     *             If the gesture could not be read
+     */
+    public static Stroke[] readGesture(DataInputStream in) throws IOException {
+
+        // gesture id, not needed for matching
+        in.readLong();
+
+        int strokeCount = in.readInt();
+        if (strokeCount < 0) {
+            throw new IOException("Invalid stroke count " + strokeCount);
+        }
+
+        Stroke[] strokes = new Stroke[strokeCount];
+
+        for (int i = 0; i < strokeCount; i++) {
+            int pointCount = in.readInt();
+            if (pointCount <= 0) {
+                throw new IOException("Invalid point count " + pointCount);
+            }
+
+            float[] points = new float[pointCount * 2];
+            long[] timestamps = new long[pointCount];
+
+            for (int j = 0; j < pointCount; j++) {
+                points[2 * j] = in.readFloat();
+                points[2 * j + 1] = in.readFloat();
+                timestamps[j] = in.readLong();
+            }
+
+            strokes[i] = new Stroke(points, timestamps);
+        }
+
+        return strokes;
+    }
+}
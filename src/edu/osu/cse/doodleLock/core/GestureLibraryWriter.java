@@ -0,0 +1,97 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes files in the format of android.gesture.GestureLibrary without
+ * depending on Android, so gestures prepared on any JVM can be loaded by the
+ * app. Each gesture is written as its own entry, named by its id, the way
+ * compacted training sessions are
+ *
+ * @author David
+ *
+ */
+public final class GestureLibraryWriter {
+
+    private GestureLibraryWriter() {
+    }
+
+    /**
+     * Writes gestures to a library file, replacing the file only once it is
+     * complete
+     *
+     * @param file
+     *            The file to write
+     * @param gestures
+     *            The strokes of each gesture
+     * @param firstId
+     *            Id of the first gesture, the others follow it
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public static void write(File file, List<Stroke[]> gestures, long firstId) throws IOException {
+
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeShort(GestureLibraryReader.FILE_FORMAT_VERSION);
+            out.writeInt(gestures.size());
+
+            long id = firstId;
+            for (Stroke[] gesture : gestures) {
+                out.writeUTF(Long.toString(id));
+                out.writeInt(1);
+                writeGesture(out, id, gesture);
+                id++;
+            }
+
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Writes a gesture in the format written by Gesture.serialize and read by
+     * GestureLibraryReader.readGesture
+     */
+    static void writeGesture(DataOutputStream out, long id, Stroke[] strokes) throws IOException {
+
+        out.writeLong(id);
+        out.writeInt(strokes.length);
+
+        for (Stroke stroke : strokes) {
+            float[] points = stroke.getPoints();
+            long[] timestamps = stroke.getTimestamps();
+            int pointCount = stroke.getPointCount();
+
+            out.writeInt(pointCount);
+            for (int i = 0; i < pointCount; i++) {
+                long time;
+                if (timestamps != null) {
+                    time = timestamps[i];
+                } else {
+                    // keep the duration by spreading the points evenly over it
+                    time = pointCount > 1 ? stroke.getDuration() * i / (pointCount - 1) : 0;
+                }
+
+                out.writeFloat(points[2 * i]);
+                out.writeFloat(points[2 * i + 1]);
+                out.writeLong(time);
+            }
+        }
+    }
+}
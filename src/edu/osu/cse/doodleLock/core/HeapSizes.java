@@ -0,0 +1,45 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * Estimates of the heap taken by the arrays and objects models are made of,
+ * for a 64-bit VM with compressed references. The VM decides the real layout,
+ * so these are only good for comparing models and bounding caches
+ *
+ * @author David
+ *
+ */
+final class HeapSizes {
+
+    static final int OBJECT_HEADER = 12;
+
+    static final int ARRAY_HEADER = 16;
+
+    static final int REFERENCE = 4;
+
+    private HeapSizes() {
+    }
+
+    /**
+     * @param length
+     *            Number of elements, 0 if the array is null
+     * @param elementBytes
+     *            Size of each element
+     * @return The estimated size of the array
+     */
+    static long array(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    /**
+     * @param fieldBytes
+     *            Total size of the object's fields
+     * @return The estimated size of the object itself
+     */
+    static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,106 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * A histogram of durations in a fixed number of buckets, so recording never
+ * allocates however many durations are recorded. Durations are kept in
+ * nanoseconds, exactly below 4ns and above that in four buckets per power of
+ * two, which keeps every percentile within 25% of the true value even for
+ * stages that take well under a microsecond. Durations past the last bucket
+ * are counted in it
+ *
+ * @author David
+ *
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Buckets per power of two, as a number of bits
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Powers of two covered, up to about 70 minutes
+     */
+    private static final int OCTAVES = 42;
+
+    static final int BUCKET_COUNT = SUB_BUCKETS * OCTAVES;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long maxNanos;
+
+    /**
+     * Records a duration
+     *
+     * @param nanos
+     *            The duration in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+
+        counts[bucket(nanos)]++;
+        count++;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * @return Number of durations recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Longest duration in nanoseconds
+     */
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile
+     *            Between 0 and 100
+     * @return The upper bound in nanoseconds of the bucket holding the
+     *         percentile, 0 if nothing was recorded
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(count * percentile / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+
+        int octave = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = octave - SUB_BUCKET_BITS;
+        int sub = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+        return Math.min((shift + 1) * SUB_BUCKETS + sub, BUCKET_COUNT - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
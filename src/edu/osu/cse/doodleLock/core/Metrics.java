@@ -0,0 +1,182 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Process wide timings of each stage of training and authentication, along
+ * with how attempts were decided. A stage is timed by taking start() before it
+ * and passing it to record(...) after it. Neither allocates, so they are cheap
+ * enough to leave in the scoring path
+ *
+ * @author David
+ *
+ */
+public final class Metrics {
+
+    /**
+     * Reading a user's training gestures from their GestureLibrary file
+     */
+    public static final int STAGE_LOAD_GESTURES = 0;
+
+    /**
+     * Reading a user's trained model file
+     */
+    public static final int STAGE_LOAD_MODEL = 1;
+
+    /**
+     * Training a doodle from a list of gestures
+     */
+    public static final int STAGE_BUILD_DOODLE = 2;
+
+    /**
+     * Converting an Android gesture to strokes
+     */
+    public static final int STAGE_CONVERT = 3;
+
+    /**
+     * Extracting the feature representation of a doodle
+     */
+    public static final int STAGE_EXTRACT = 4;
+
+    /**
+     * Scoring an attempt against one user's model
+     */
+    public static final int STAGE_SCORE = 5;
+
+    /**
+     * Matching an attempt against every user
+     */
+    public static final int STAGE_IDENTIFY = 6;
+
+    /**
+     * Adding a training sample to a model
+     */
+    public static final int STAGE_TRAIN_SAMPLE = 7;
+
+    /**
+     * Writing a user's trained model file
+     */
+    public static final int STAGE_SAVE_MODEL = 8;
+
+    private static final String[] STAGE_NAMES = { "load gestures", "load model", "build doodle", "convert",
+            "extract", "score", "identify", "train sample", "save model" };
+
+    private static final LatencyHistogram[] sStages = new LatencyHistogram[STAGE_NAMES.length];
+
+    static {
+        for (int i = 0; i < sStages.length; i++) {
+            sStages[i] = new LatencyHistogram();
+        }
+    }
+
+    private static long sAccepted;
+
+    /**
+     * Attempts with strokes the user's model has never seen
+     */
+    private static long sRejectedStrokeCount;
+
+    /**
+     * Attempts with every stroke known but a score below the threshold
+     */
+    private static long sRejectedThreshold;
+
+    /**
+     * Strokes recorded with a duration of 0 because the time they were drawn
+     * could not be read
+     */
+    private static long sDurationFallbacks;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The start time to pass to record(...)
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records how long a stage took
+     *
+     * @param stage
+     *            One of the STAGE constants
+     * @param start
+     *            The time returned by start() before the stage began
+     */
+    public static void record(int stage, long start) {
+        sStages[stage].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Counts how an attempt was decided. Only an attempt the model could never
+     * accept scores negative infinity, which is an attempt with a stroke the
+     * user never drew
+     *
+     * @param result
+     *            The decision on the attempt
+     */
+    public static synchronized void count(AuthenticationResult result) {
+        if (result.isAccepted()) {
+            sAccepted++;
+        } else if (result.getScore() == Double.NEGATIVE_INFINITY) {
+            sRejectedStrokeCount++;
+        } else {
+            sRejectedThreshold++;
+        }
+    }
+
+    /**
+     * Counts a stroke whose duration could not be read and was recorded as 0
+     */
+    public static synchronized void countDurationFallback() {
+        sDurationFallbacks++;
+    }
+
+    /**
+     * Writes a table of the count, p50, p99 and maximum of every stage in
+     * nanoseconds, followed by the decision counts and the number of strokes
+     * recorded without a duration
+     *
+     * @param out
+     *            Where to write the table
+     * @throws IOException
+     *             If the table could not be written
+     */
+    public static void write(Writer out) throws IOException {
+        out.write("stage\tcount\tp50_ns\tp99_ns\tmax_ns\n");
+        for (int i = 0; i < sStages.length; i++) {
+            LatencyHistogram stage = sStages[i];
+            out.write(STAGE_NAMES[i] + "\t" + stage.getCount() + "\t" + stage.getPercentileNanos(50) + "\t"
+                    + stage.getPercentileNanos(99) + "\t" + stage.getMaxNanos() + "\n");
+        }
+
+        synchronized (Metrics.class) {
+            out.write("accepted\t" + sAccepted + "\n");
+            out.write("rejected stroke count\t" + sRejectedStrokeCount + "\n");
+            out.write("rejected threshold\t" + sRejectedThreshold + "\n");
+            out.write("stroke duration fallbacks\t" + sDurationFallbacks + "\n");
+        }
+    }
+
+    /**
+     * Writes the table to a file, replacing it
+     *
+     * @param file
+     *            File to write the table to
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public static void write(File file) throws IOException {
+        Writer out = new FileWriter(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+}
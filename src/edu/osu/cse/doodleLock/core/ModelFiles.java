@@ -0,0 +1,114 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Saves and loads trained models. A model file starts with MODEL_MAGIC, the
+ * format version and the engine id, followed by the engine's own data.
+ * Version 1 files have no engine id and always hold a GaussianModel
+ *
+ * @author David
+ *
+ */
+public final class ModelFiles {
+
+    /**
+     * Marks the start of a saved model file
+     */
+    public static final int MODEL_MAGIC = 0x444F4F44;
+
+    /**
+     * Version of the saved model file format
+     */
+    public static final int MODEL_VERSION = 2;
+
+    public static final int ENGINE_GAUSSIAN = 0;
+    public static final int ENGINE_DTW = 1;
+
+    private ModelFiles() {
+    }
+
+    /**
+     * Writes a trained model to a file. The raw training samples are not saved
+     *
+     * @param model
+     *            The model to save
+     * @param file
+     *            File to write the model to
+     * @throws IOException
+     *             If the model could not be written
+     */
+    public static void save(DoodleModel model, File file) throws IOException {
+
+        // write to a temporary file first so a failed save never leaves a
+        // partial model behind
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+
+        try {
+            out.writeInt(MODEL_MAGIC);
+            out.writeInt(MODEL_VERSION);
+            out.writeInt(model.getEngine());
+            model.write(out);
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Reads a model previously written by save
+     *
+     * @param file
+     *            File to read the model from
+     * @return The loaded model. It can score and accept new training samples,
+     *         but has no raw samples to remove
+     * @throws IOException
+     *             If the file is not a model trained with the current
+     *             parameters
+     */
+    public static DoodleModel load(File file) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != MODEL_MAGIC) {
+                throw new IOException(file + " is not a doodle model");
+            }
+
+            int version = in.readInt();
+            int engine;
+            if (version == 1) {
+                engine = ENGINE_GAUSSIAN;
+            } else if (version == MODEL_VERSION) {
+                engine = in.readInt();
+            } else {
+                throw new IOException("Unsupported model version " + version);
+            }
+
+            switch (engine) {
+            case ENGINE_GAUSSIAN:
+                return GaussianModel.read(in);
+            case ENGINE_DTW:
+                return DtwModel.read(in);
+            default:
+                throw new IOException("Unknown model engine " + engine);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
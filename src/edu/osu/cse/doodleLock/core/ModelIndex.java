@@ -0,0 +1,378 @@
+package edu.osu.cse.doodleLock.core;
+
+import static edu.osu.cse.doodleLock.core.FeatureExtractor.FEATURES_PER_STROKE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Finds which users' models accept a doodle without scoring it against every
+ * model. Models are grouped by the number of strokes they allow and sorted by
+ * where their first stroke starts, so most models are ruled out by exact
+ * bounds before any scoring. Only the survivors are fully scored. Models from
+ * other engines have no such bounds and are always scored. The width and
+ * height of the first stroke are bounded the same way before scoring.
+ *
+ * Engines score on different scales, so matches are ranked by their margin,
+ * how far their score is past the accept threshold of their engine
+ *
+ * @author David
+ *
+ */
+public class ModelIndex {
+
+    /**
+     * Index of the first stroke's start x value in the representation
+     */
+    private static final int START_X = 1;
+
+    /**
+     * Index of the first stroke's width in the representation
+     */
+    private static final int WIDTH = 5;
+
+    /**
+     * Index of the first stroke's height in the representation
+     */
+    private static final int HEIGHT = 6;
+
+    /**
+     * A user matched by identify
+     */
+    public static class Match {
+
+        private final String user;
+        private final double score;
+        private final double margin;
+
+        Match(String user, double score, double margin) {
+            this.user = user;
+            this.score = score;
+            this.margin = margin;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * @return Natural log of the confidence the doodle matches the user
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * @return How far the score is past the accept threshold of the
+         *         user's engine, comparable between engines
+         */
+        public double getMargin() {
+            return margin;
+        }
+    }
+
+    /**
+     * The values of one dimension a model can accept, those within radius of
+     * center
+     */
+    private static class Window {
+
+        final double center;
+        final double radius;
+
+        /**
+         * @param logCount
+         *            Log of the model's active dimension count
+         */
+        Window(GaussianModel model, int index, double logCount) {
+            // every dimension can only lower the score, so a single dimension
+            // costing more than logCount - LOG_THRESHOLD rejects the doodle
+            double variance = model.dimensions > index ? model.variances[index] : 0.0;
+            if (variance != 0) {
+                center = model.means[index];
+                radius = Math.sqrt(GaussianModel.TOLERANCE * 2 * variance
+                        * (logCount - GaussianModel.LOG_THRESHOLD));
+            } else {
+                // only 0 is accepted where the variance is 0
+                center = 0.0;
+                radius = 0.0;
+            }
+        }
+
+        boolean contains(double value) {
+            return Math.abs(value - center) <= radius;
+        }
+    }
+
+    /**
+     * A model along with the bounds used to rule it out
+     */
+    private static class Entry {
+
+        final String user;
+        final GaussianModel model;
+
+        /**
+         * Number of leading stroke slots with any non-zero variance. Data in
+         * a later slot is always rejected
+         */
+        final int strokeSlots;
+
+        /**
+         * Where accepted doodles start their first stroke
+         */
+        final Window startX;
+
+        /**
+         * Widths and heights of the first stroke of accepted doodles
+         */
+        final Window width;
+        final Window height;
+
+        Entry(String user, GaussianModel model, int strokeSlots, double logCount) {
+            this.user = user;
+            this.model = model;
+            this.strokeSlots = strokeSlots;
+            this.startX = new Window(model, START_X, logCount);
+            this.width = new Window(model, WIDTH, logCount);
+            this.height = new Window(model, HEIGHT, logCount);
+        }
+    }
+
+    private static final Comparator<Entry> BY_START_X = new Comparator<Entry>() {
+        public int compare(Entry lhs, Entry rhs) {
+            return Double.compare(lhs.startX.center, rhs.startX.center);
+        }
+    };
+
+    private static final Comparator<Match> BY_MARGIN = new Comparator<Match>() {
+        public int compare(Match lhs, Match rhs) {
+            return Double.compare(lhs.margin, rhs.margin);
+        }
+    };
+
+    private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Models that are not Gaussian, scored against every doodle
+     */
+    private final HashMap<String, DoodleModel> unindexed = new HashMap<String, DoodleModel>();
+
+    /**
+     * Entries grouped by strokeSlots and sorted by startX, rebuilt when dirty
+     */
+    private final ArrayList<ArrayList<Entry>> buckets = new ArrayList<ArrayList<Entry>>();
+
+    /**
+     * The largest startX radius in each bucket
+     */
+    private double[] maxRadius = new double[0];
+
+    private boolean dirty = false;
+
+    /**
+     * Adds or replaces a user's model. The model must not change while it is
+     * in the index
+     *
+     * @param user
+     *            Name of the user
+     * @param doodleModel
+     *            The user's trained model
+     */
+    public synchronized void put(String user, DoodleModel doodleModel) {
+
+        if (!(doodleModel instanceof GaussianModel)) {
+            remove(user);
+            unindexed.put(user, doodleModel);
+            return;
+        }
+
+        unindexed.remove(user);
+        GaussianModel model = (GaussianModel) doodleModel;
+        double logCount = Math.log(model.activeCount);
+
+        // a model that cannot accept anything is left out
+        if (logCount < GaussianModel.LOG_THRESHOLD) {
+            remove(user);
+            return;
+        }
+
+        int strokeSlots = 0;
+        for (int slot = 0; slot < model.dimensions / FEATURES_PER_STROKE; slot++) {
+            for (int i = 0; i < FEATURES_PER_STROKE; i++) {
+                if (model.variances[FEATURES_PER_STROKE * slot + i] != 0) {
+                    strokeSlots = slot + 1;
+                }
+            }
+        }
+
+        entries.put(user, new Entry(user, model, strokeSlots, logCount));
+        dirty = true;
+    }
+
+    /**
+     * @param user
+     *            Name of the user
+     */
+    public synchronized void remove(String user) {
+        if (entries.remove(user) != null) {
+            dirty = true;
+        }
+        unindexed.remove(user);
+    }
+
+    /**
+     * Removes every model
+     */
+    public synchronized void clear() {
+        entries.clear();
+        unindexed.clear();
+        dirty = true;
+    }
+
+    /**
+     * @param user
+     *            Name of the user
+     * @return True if the user has a model in the index
+     */
+    public synchronized boolean contains(String user) {
+        return entries.containsKey(user) || unindexed.containsKey(user);
+    }
+
+    /**
+     * @return Number of models in the index
+     */
+    public synchronized int size() {
+        return entries.size() + unindexed.size();
+    }
+
+    /**
+     * Finds the users whose models accept a doodle
+     *
+     * @param doodle
+     *            Strokes of the doodle
+     * @param maxMatches
+     *            The most matches to return
+     * @return Up to maxMatches accepting users, largest margin first
+     */
+    public synchronized List<Match> identify(Stroke[] doodle, int maxMatches) {
+
+        double[] sample = FeatureExtractor.extract(doodle);
+
+        if (dirty) {
+            rebuild();
+        }
+
+        // strokes past the last slot with data
+        int strokes = 0;
+        for (int i = 0; i < sample.length; i++) {
+            if (sample[i] != 0) {
+                strokes = i / FEATURES_PER_STROKE + 1;
+            }
+        }
+
+        double x = sample.length > START_X ? sample[START_X] : 0.0;
+        double width = sample.length > WIDTH ? sample[WIDTH] : 0.0;
+        double height = sample.length > HEIGHT ? sample[HEIGHT] : 0.0;
+        PriorityQueue<Match> best = new PriorityQueue<Match>(maxMatches + 1, BY_MARGIN);
+
+        // models with fewer slots than the doodle has strokes always reject it
+        for (int slots = strokes; slots < buckets.size(); slots++) {
+            ArrayList<Entry> bucket = buckets.get(slots);
+
+            for (int i = firstAtOrAbove(bucket, x - maxRadius[slots]); i < bucket.size(); i++) {
+                Entry entry = bucket.get(i);
+
+                if (entry.startX.center > x + maxRadius[slots]) {
+                    break;
+                }
+                if (!entry.startX.contains(x) || !entry.width.contains(width) || !entry.height.contains(height)) {
+                    continue;
+                }
+
+                AuthenticationResult result = entry.model.score(sample);
+                if (result.isAccepted()) {
+                    best.add(new Match(entry.user, result.getScore(),
+                            result.getScore() - GaussianModel.LOG_THRESHOLD));
+                    if (best.size() > maxMatches) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, DoodleModel> other : unindexed.entrySet()) {
+            AuthenticationResult result = other.getValue().score(doodle);
+            if (result.isAccepted()) {
+                best.add(new Match(other.getKey(), result.getScore(),
+                        result.getScore() - acceptThreshold(other.getValue())));
+                if (best.size() > maxMatches) {
+                    best.poll();
+                }
+            }
+        }
+
+        ArrayList<Match> matches = new ArrayList<Match>(best);
+        Collections.sort(matches, Collections.reverseOrder(BY_MARGIN));
+        return matches;
+    }
+
+    /**
+     * @return The log score at which an unindexed model starts to accept
+     */
+    private static double acceptThreshold(DoodleModel model) {
+        return model instanceof DtwModel ? DtwModel.LOG_THRESHOLD : GaussianModel.LOG_THRESHOLD;
+    }
+
+    private void rebuild() {
+
+        int bucketCount = 0;
+        for (Entry entry : entries.values()) {
+            bucketCount = Math.max(bucketCount, entry.strokeSlots + 1);
+        }
+
+        while (buckets.size() > bucketCount) {
+            buckets.remove(buckets.size() - 1);
+        }
+        for (ArrayList<Entry> bucket : buckets) {
+            bucket.clear();
+        }
+        while (buckets.size() < bucketCount) {
+            buckets.add(new ArrayList<Entry>());
+        }
+        maxRadius = new double[bucketCount];
+
+        for (Entry entry : entries.values()) {
+            buckets.get(entry.strokeSlots).add(entry);
+            maxRadius[entry.strokeSlots] = Math.max(maxRadius[entry.strokeSlots], entry.startX.radius);
+        }
+
+        for (ArrayList<Entry> bucket : buckets) {
+            Collections.sort(bucket, BY_START_X);
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * @return Index of the first entry with a startX center of at least x
+     */
+    private static int firstAtOrAbove(ArrayList<Entry> bucket, double x) {
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bucket.get(middle).startX.center < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,134 @@
+package edu.osu.cse.doodleLock.core;
+
+import static edu.osu.cse.doodleLock.core.FeatureExtractor.FEATURES_PER_STROKE;
+
+/**
+ * Scores an attempt against a GaussianModel one stroke at a time while it is
+ * being drawn. Each stroke's dimensions are scored as soon as the stroke is
+ * finished, and the attempt is marked as failed once no later strokes could
+ * bring it back above the threshold. Finishing gives the same result as
+ * GaussianModel.score on the whole attempt
+ *
+ * @author David
+ *
+ */
+public class ProgressiveScorer {
+
+    private final GaussianModel model;
+
+    /**
+     * Representation of the latest stroke
+     */
+    private final double[] strokeValues = new double[FEATURES_PER_STROKE];
+
+    /**
+     * Log confidence over the strokes added so far
+     */
+    private double score;
+
+    private int strokeCount;
+
+    private boolean failed;
+
+    /**
+     * @param model
+     *            The trained model to score against. It must not change while
+     *            an attempt is being scored
+     */
+    public ProgressiveScorer(GaussianModel model) {
+        this.model = model;
+        reset();
+    }
+
+    /**
+     * Forgets the strokes of the current attempt to start a new one
+     */
+    public void reset() {
+        // the count term is known up front, and every dimension can only
+        // lower the score from here
+        score = Math.log(model.activeCount);
+        strokeCount = 0;
+        failed = score < GaussianModel.LOG_THRESHOLD;
+    }
+
+    /**
+     * Scores the next stroke of the attempt
+     *
+     * @param stroke
+     *            The stroke that was just finished
+     * @return False if the attempt can no longer be accepted
+     */
+    public boolean addStroke(Stroke stroke) {
+
+        int slot = strokeCount++;
+
+        if (failed) {
+            return false;
+        }
+
+        FeatureExtractor.extractStroke(stroke, strokeValues, 0);
+        scoreSlot(slot, strokeValues);
+
+        return !failed;
+    }
+
+    /**
+     * Scores the slots of strokes that were never drawn and returns the result
+     * of the attempt
+     *
+     * @return The decision along with the log confidence
+     */
+    public AuthenticationResult finish() {
+
+        if (!failed) {
+            for (int i = 0; i < FEATURES_PER_STROKE; i++) {
+                strokeValues[i] = 0.0;
+            }
+            int slots = model.dimensions / FEATURES_PER_STROKE;
+            for (int slot = strokeCount; slot < slots && !failed; slot++) {
+                scoreSlot(slot, strokeValues);
+            }
+        }
+
+        return new AuthenticationResult(!failed, score);
+    }
+
+    /**
+     * @return Number of strokes added to the current attempt
+     */
+    public int getStrokeCount() {
+        return strokeCount;
+    }
+
+    /**
+     * @return True if the current attempt can no longer be accepted
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    private void scoreSlot(int slot, double[] values) {
+
+        int offset = FEATURES_PER_STROKE * slot;
+
+        for (int i = 0; i < FEATURES_PER_STROKE; i++) {
+            double variance = offset < model.dimensions ? model.variances[offset + i] : 0.0;
+
+            if (variance != 0) {
+                double diff = values[i] - model.means[offset + i];
+                score -= diff * diff / (GaussianModel.TOLERANCE * 2 * variance);
+
+                if (score < GaussianModel.LOG_THRESHOLD) {
+                    failed = true;
+                    return;
+                }
+            } else if (values[i] != 0) {
+                // a stroke where the model has none is more strokes than the
+                // user ever drew
+                score = Double.NEGATIVE_INFINITY;
+                failed = true;
+                return;
+            }
+        }
+    }
+}
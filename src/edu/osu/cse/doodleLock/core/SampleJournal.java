@@ -0,0 +1,296 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of the training samples saved during a session. Each
+ * sample is appended and synced to storage as it is saved, so a crash or a
+ * restarted activity loses nothing. Once the session is finished the journal is
+ * compacted into the user's GestureLibrary file in one write.
+ *
+ * The file starts with JOURNAL_MAGIC and the format version. Each record is
+ * the payload length, the CRC32 of the payload and the payload, a gesture in
+ * the format written by Gesture.serialize. A record with an empty payload
+ * marks the end of a session, samples appended after it start a new session
+ * that replaces the finished one. A record cut short by a crash fails its length
+ * or checksum and is dropped along with anything after it. Journals are only
+ * touched by one thread at a time
+ *
+ * @author David
+ *
+ */
+public final class SampleJournal {
+
+    /**
+     * Marks the start of a journal file
+     */
+    public static final int JOURNAL_MAGIC = 0x444F4A4E;
+
+    /**
+     * Version of the journal file format
+     */
+    public static final int JOURNAL_VERSION = 1;
+
+    /**
+     * Size of the magic and version at the start of the file
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * The valid records of a journal
+     */
+    private static class Contents {
+
+        /**
+         * Samples of the last session
+         */
+        final ArrayList<byte[]> payloads = new ArrayList<byte[]>();
+
+        /**
+         * Offset of the end of the last valid record
+         */
+        long validLength = HEADER_SIZE;
+
+        /**
+         * True if the last valid record marks the end of a session
+         */
+        boolean finished;
+    }
+
+    private SampleJournal() {
+    }
+
+    /**
+     * Appends a training sample and syncs it to storage
+     *
+     * @param journal
+     *            The journal file, created if it does not exist
+     * @param id
+     *            Id of the gesture, used as its entry name once compacted
+     * @param strokes
+     *            Strokes of the sample
+     * @throws IOException
+     *             If the sample could not be written
+     */
+    public static synchronized void append(File journal, long id, Stroke[] strokes) throws IOException {
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        GestureLibraryWriter.writeGesture(out, id, strokes);
+        out.flush();
+
+        appendRecord(journal, payload.toByteArray());
+    }
+
+    /**
+     * Marks the end of a session. Samples appended afterwards start a new one
+     *
+     * @param journal
+     *            The journal file
+     * @throws IOException
+     *             If the marker could not be written
+     */
+    public static synchronized void finish(File journal) throws IOException {
+        appendRecord(journal, new byte[0]);
+    }
+
+    /**
+     * Reads every sample that made it to storage, dropping a record cut short
+     * by a crash so later appends follow the last valid one
+     *
+     * @param journal
+     *            The journal file
+     * @return The samples of the last session in the order they were appended,
+     *         empty if there is no journal
+     * @throws IOException
+     *             If the file could not be read or is not a journal
+     */
+    public static synchronized ArrayList<Stroke[]> recover(File journal) throws IOException {
+
+        ArrayList<Stroke[]> samples = new ArrayList<Stroke[]>();
+        if (!journal.exists()) {
+            return samples;
+        }
+
+        Contents contents = read(journal);
+
+        if (contents.validLength < journal.length()) {
+            RandomAccessFile file = new RandomAccessFile(journal, "rw");
+            try {
+                file.setLength(contents.validLength);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+
+        for (byte[] payload : contents.payloads) {
+            samples.add(GestureLibraryReader.readGesture(new DataInputStream(new ByteArrayInputStream(payload))));
+        }
+        return samples;
+    }
+
+    /**
+     * @param journal
+     *            The journal file
+     * @return True if the journal holds a finished session that has not been
+     *         compacted
+     * @throws IOException
+     *             If the file could not be read or is not a journal
+     */
+    public static synchronized boolean isFinished(File journal) throws IOException {
+        return journal.exists() && read(journal).finished;
+    }
+
+    /**
+     * Replaces the user's GestureLibrary file with the samples of a finished
+     * journal, one entry per sample, then deletes the journal. If this is
+     * interrupted the journal is still there to compact again. A journal with
+     * a session in progress is left alone
+     *
+     * @param journal
+     *            The journal file
+     * @param gestureFile
+     *            The user's GestureLibrary file
+     * @throws IOException
+     *             If the library could not be written
+     */
+    public static synchronized void compact(File journal, File gestureFile) throws IOException {
+
+        if (!journal.exists()) {
+            return;
+        }
+
+        Contents contents = read(journal);
+        if (!contents.finished) {
+            return;
+        }
+
+        File temp = new File(gestureFile.getAbsolutePath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeShort(GestureLibraryReader.FILE_FORMAT_VERSION);
+            out.writeInt(contents.payloads.size());
+
+            for (byte[] payload : contents.payloads) {
+                long id = new DataInputStream(new ByteArrayInputStream(payload)).readLong();
+                out.writeUTF(Long.toString(id));
+                out.writeInt(1);
+                out.write(payload);
+            }
+
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(gestureFile)) {
+            temp.delete();
+            throw new IOException("Could not replace " + gestureFile);
+        }
+
+        journal.delete();
+    }
+
+    private static void appendRecord(File journal, byte[] payload) throws IOException {
+
+        boolean create = !journal.exists() || journal.length() < HEADER_SIZE;
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        FileOutputStream stream = new FileOutputStream(journal, !create);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            if (create) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(JOURNAL_VERSION);
+            }
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Contents read(File journal) throws IOException {
+
+        Contents contents = new Contents();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+
+        try {
+            // a crash while creating the journal can leave a partial header
+            if (journal.length() < HEADER_SIZE) {
+                contents.validLength = 0;
+                return contents;
+            }
+            if (in.readInt() != JOURNAL_MAGIC) {
+                throw new IOException(journal + " is not a sample journal");
+            }
+            int version = in.readInt();
+            if (version != JOURNAL_VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+
+            long remaining = journal.length() - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+
+            while (remaining >= 8) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > remaining - 8) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                if (length == 0) {
+                    contents.finished = true;
+                } else {
+                    if (contents.finished) {
+                        contents.payloads.clear();
+                    }
+                    contents.payloads.add(payload);
+                    contents.finished = false;
+                }
+
+                remaining -= 8 + length;
+                contents.validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // the records up to here are valid
+        } finally {
+            in.close();
+        }
+
+        return contents;
+    }
+}
@@ -0,0 +1,163 @@
+package edu.osu.cse.doodleLock.core;
+
+/**
+ * A single stroke of a doodle as primitive arrays, independent of
+ * android.gesture so the matching code can run on any JVM
+ *
+ * @author David
+ *
+ */
+public class Stroke {
+
+    /**
+     * Points of the stroke as x, y pairs: x0, y0, x1, y1, ...
+     */
+    private final float[] points;
+
+    /**
+     * Time each point was drawn, may be null if the times are unknown
+     */
+    private final long[] timestamps;
+
+    /**
+     * Time between the first and last point of the stroke
+     */
+    private final long duration;
+
+    /**
+     * Total distance along the stroke
+     */
+    private final float length;
+
+    private final float minX;
+    private final float minY;
+    private final float maxX;
+    private final float maxY;
+
+    /**
+     * Constructs a stroke, taking the duration from the timestamps
+     *
+     * @param points
+     *            Points of the stroke as x, y pairs
+     * @param timestamps
+     *            Time of each point, or null if unknown
+     */
+    public Stroke(float[] points, long[] timestamps) {
+        this(points, timestamps, timestamps == null || timestamps.length == 0 ? 0
+                : timestamps[timestamps.length - 1] - timestamps[0]);
+    }
+
+    /**
+     * Constructs a stroke with a duration measured elsewhere, such as from
+     * touch events
+     *
+     * @param points
+     *            Points of the stroke as x, y pairs
+     * @param timestamps
+     *            Time of each point, or null if unknown
+     * @param duration
+     *            Time taken to draw the stroke
+     */
+    public Stroke(float[] points, long[] timestamps, long duration) {
+
+        if (points.length < 2 || points.length % 2 != 0) {
+            throw new IllegalArgumentException("A stroke needs at least one x, y point");
+        }
+
+        this.points = points;
+        this.timestamps = timestamps;
+        this.duration = duration;
+
+        float len = 0;
+        float left = points[0];
+        float top = points[1];
+        float right = left;
+        float bottom = top;
+
+        for (int i = 2; i < points.length; i += 2) {
+            float x = points[i];
+            float y = points[i + 1];
+            float dx = x - points[i - 2];
+            float dy = y - points[i - 1];
+            len += (float) Math.sqrt(dx * dx + dy * dy);
+
+            if (x < left) {
+                left = x;
+            } else if (x > right) {
+                right = x;
+            }
+            if (y < top) {
+                top = y;
+            } else if (y > bottom) {
+                bottom = y;
+            }
+        }
+
+        length = len;
+        minX = left;
+        minY = top;
+        maxX = right;
+        maxY = bottom;
+    }
+
+    /**
+     * @return Points of the stroke as x, y pairs. The array is not copied
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    /**
+     * @return Time of each point, or null if unknown. The array is not copied
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return Number of points in the stroke
+     */
+    public int getPointCount() {
+        return points.length / 2;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public float getLength() {
+        return length;
+    }
+
+    public float getStartX() {
+        return points[0];
+    }
+
+    public float getStartY() {
+        return points[1];
+    }
+
+    public float getEndX() {
+        return points[points.length - 2];
+    }
+
+    public float getEndY() {
+        return points[points.length - 1];
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getWidth() {
+        return maxX - minX;
+    }
+
+    public float getHeight() {
+        return maxY - minY;
+    }
+}
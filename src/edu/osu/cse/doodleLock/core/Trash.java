@@ -0,0 +1,92 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Deletes users' files in two steps. Moving a file into the trash directory is
+ * a single rename, so the user is gone from every listing at once and a crash
+ * never leaves a half deleted user behind. The slow recursive removal of the
+ * trash can then run in the background, and simply runs again if it was
+ * interrupted
+ *
+ * @author David
+ *
+ */
+public final class Trash {
+
+    /**
+     * Name of the trash directory in the root directory. It starts with "." so
+     * it is never taken for a user
+     */
+    public static final String TRASH_DIR = ".trash";
+
+    private Trash() {
+    }
+
+    /**
+     * Moves a file or directory into the trash under a name no other trashed
+     * file has
+     *
+     * @param root
+     *            The root directory holding every user
+     * @param file
+     *            The file or directory to trash. Nothing happens if it does not
+     *            exist
+     * @throws IOException
+     *             If the file could not be moved
+     */
+    public static synchronized void moveToTrash(File root, File file) throws IOException {
+
+        if (!file.exists()) {
+            return;
+        }
+
+        File trash = new File(root, TRASH_DIR);
+        trash.mkdirs();
+
+        File target = new File(trash, file.getName() + "-" + System.currentTimeMillis());
+        for (int i = 1; target.exists(); i++) {
+            target = new File(trash, file.getName() + "-" + System.currentTimeMillis() + "-" + i);
+        }
+
+        if (!file.renameTo(target)) {
+            throw new IOException("Could not move " + file + " to the trash");
+        }
+    }
+
+    /**
+     * Deletes everything in the trash
+     *
+     * @param root
+     *            The root directory holding every user
+     * @return True if the trash is now empty
+     */
+    public static boolean empty(File root) {
+
+        File[] files = new File(root, TRASH_DIR).listFiles();
+        if (files == null) {
+            return true;
+        }
+
+        boolean deleted = true;
+        for (File file : files) {
+            deleted &= delete(file);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes a file, or a directory and everything in it
+     */
+    private static boolean delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        return file.delete() || !file.exists();
+    }
+}
@@ -0,0 +1,111 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.File;
+
+/**
+ * Locations of each user's files under the root directory
+ *
+ * @author David
+ *
+ */
+public final class UserFiles {
+
+    /**
+     * Name of the trained model file in a user's directory
+     */
+    public static final String MODEL_FILE = "doodle.model";
+
+    /**
+     * Name of the journal of training samples in a user's directory
+     */
+    public static final String JOURNAL_FILE = "samples.journal";
+
+    /**
+     * Name of the user index in the root directory. It starts with "." so it
+     * is never taken for a user
+     */
+    public static final String USER_INDEX_FILE = ".users";
+
+    /**
+     * Name of the stage timings exported to the root directory
+     */
+    public static final String METRICS_FILE = ".metrics";
+
+    private UserFiles() {
+    }
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     * @return The user's directory
+     */
+    public static File getUserDir(File root, String user) {
+        return new File(root, user);
+    }
+
+    /**
+     * Returns the GestureLibrary file holding the user's training gestures.
+     * Training sessions have always saved it next to the user's directory
+     * rather than in it, as root/userNameuserName
+     *
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     * @return The user's training gesture file
+     */
+    public static File getGestureFile(File root, String user) {
+        return new File(root, user + user);
+    }
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     * @return The user's trained model file
+     */
+    public static File getModelFile(File root, String user) {
+        return new File(getUserDir(root, user), MODEL_FILE);
+    }
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @param user
+     *            Name of the user
+     * @return The journal of the user's training session
+     */
+    public static File getJournalFile(File root, String user) {
+        return new File(getUserDir(root, user), JOURNAL_FILE);
+    }
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @return The index of every user
+     */
+    public static File getUserIndexFile(File root) {
+        return new File(root, USER_INDEX_FILE);
+    }
+
+    /**
+     * @param root
+     *            The root directory holding every user
+     * @return The file the stage timings are exported to
+     */
+    public static File getMetricsFile(File root) {
+        return new File(root, METRICS_FILE);
+    }
+
+    /**
+     * @param file
+     *            An entry of the root directory
+     * @return True if the entry is a user's directory
+     */
+    public static boolean isUserDir(File file) {
+        return file.isDirectory() && !file.getName().startsWith(".");
+    }
+}
@@ -0,0 +1,261 @@
+package edu.osu.cse.doodleLock.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Every enrolled user with a summary of their training, kept in one file so
+ * the list of users can be loaded in a single read instead of by listing the
+ * root directory. The file starts with INDEX_MAGIC and the format version,
+ * followed by the number of users and each user's entry in name order
+ *
+ * @author David
+ *
+ */
+public class UserIndex {
+
+    /**
+     * Marks the start of a user index file
+     */
+    public static final int INDEX_MAGIC = 0x444F5553;
+
+    /**
+     * Version of the user index file format
+     */
+    public static final int INDEX_VERSION = 1;
+
+    /**
+     * A user in the index
+     */
+    public static class Entry {
+
+        private final String name;
+        private final int sampleCount;
+        private final long lastTrained;
+        private final int modelVersion;
+
+        Entry(String name, int sampleCount, long lastTrained, int modelVersion) {
+            this.name = name;
+            this.sampleCount = sampleCount;
+            this.lastTrained = lastTrained;
+            this.modelVersion = modelVersion;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of samples the user's model was trained on
+         */
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * @return When the user was last trained, in milliseconds since the
+         *         epoch
+         */
+        public long getLastTrained() {
+            return lastTrained;
+        }
+
+        /**
+         * @return Number of times the user has been trained, so anything
+         *         derived from an older model can be told apart
+         */
+        public int getModelVersion() {
+            return modelVersion;
+        }
+    }
+
+    private final TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+
+    /**
+     * Records that a user was trained, moving them to the next model version
+     *
+     * @param user
+     *            Name of the user
+     * @param sampleCount
+     *            Number of samples the model was trained on
+     * @param time
+     *            When the training finished, in milliseconds since the epoch
+     * @return The user's new entry
+     */
+    public synchronized Entry trained(String user, int sampleCount, long time) {
+        Entry old = entries.get(user);
+        Entry entry = new Entry(user, sampleCount, time, old != null ? old.modelVersion + 1 : 1);
+        entries.put(user, entry);
+        return entry;
+    }
+
+    /**
+     * @param user
+     *            Name of the user
+     * @return True if the user was in the index
+     */
+    public synchronized boolean remove(String user) {
+        return entries.remove(user) != null;
+    }
+
+    /**
+     * @param user
+     *            Name of the user
+     * @return The user's entry, or null if the user is not in the index
+     */
+    public synchronized Entry get(String user) {
+        return entries.get(user);
+    }
+
+    /**
+     * @return Every user, in name order
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * @return Number of users in the index
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the index, replacing the file only once it is complete
+     *
+     * @param file
+     *            File to write the index to
+     * @throws IOException
+     *             If the index could not be written
+     */
+    public synchronized void write(File file) throws IOException {
+
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(entries.size());
+
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.name);
+                out.writeInt(entry.sampleCount);
+                out.writeLong(entry.lastTrained);
+                out.writeInt(entry.modelVersion);
+            }
+
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Reads an index previously written by write
+     *
+     * @param file
+     *            File to read the index from
+     * @return The loaded index
+     * @throws IOException
+     *             If the file could not be read or is not a user index
+     */
+    public static UserIndex read(File file) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException(file + " is not a user index");
+            }
+            int version = in.readInt();
+            if (version != INDEX_VERSION) {
+                throw new IOException("Unsupported user index version " + version);
+            }
+
+            UserIndex index = new UserIndex();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readInt(), in.readLong(), in.readInt());
+                index.entries.put(entry.name, entry);
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Builds the index from the users' directories, for roots that have never
+     * had one or whose index was lost. Sample counts are read from the saved
+     * models, so this is slow with many users and only meant to run once
+     *
+     * @param root
+     *            The root directory holding every user
+     * @return The rebuilt index
+     */
+    public static UserIndex rebuild(File root) {
+        UserIndex index = new UserIndex();
+        index.addMissing(root);
+        return index;
+    }
+
+    /**
+     * Adds the users whose directories are in the root but not in the index,
+     * such as users enrolled by a run that was killed before it wrote the
+     * index. Only the added users' models are read
+     *
+     * @param root
+     *            The root directory holding every user
+     * @return Number of users added
+     */
+    public synchronized int addMissing(File root) {
+
+        File[] files = root.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int added = 0;
+        for (File file : files) {
+            if (!UserFiles.isUserDir(file) || entries.containsKey(file.getName())) {
+                continue;
+            }
+
+            String user = file.getName();
+            File modelFile = UserFiles.getModelFile(root, user);
+            int sampleCount = 0;
+
+            if (modelFile.exists()) {
+                try {
+                    sampleCount = ModelFiles.load(modelFile).getSampleCount();
+                } catch (IOException e) {
+                    // the model is rebuilt when the user is next loaded
+                }
+            }
+
+            entries.put(user, new Entry(user, sampleCount,
+                    modelFile.exists() ? modelFile.lastModified() : file.lastModified(), 1));
+            added++;
+        }
+
+        return added;
+    }
+}
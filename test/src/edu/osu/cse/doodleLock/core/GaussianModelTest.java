@@ -0,0 +1,144 @@
+package edu.osu.cse.doodleLock.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GaussianModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void removingTheOnlyLongSampleLeavesNoResidue() {
+        Random random = new Random(2);
+
+        for (int trial = 0; trial < 200; trial++) {
+            GaussianModel model = new GaussianModel();
+            model.addSample(randomSample(random, 2));
+            for (int i = 0; i < 5; i++) {
+                model.addSample(randomSample(random, 1));
+            }
+            model.removeSample(0);
+
+            for (int i = FeatureExtractor.FEATURES_PER_STROKE; i < model.dimensions; i++) {
+                assertEquals(0.0, model.means[i], 0.0);
+                assertEquals(0.0, model.variances[i], 0.0);
+            }
+            assertEquals(FeatureExtractor.FEATURES_PER_STROKE, model.activeCount);
+
+            // any data in the second stroke is more strokes than any sample left
+            double[] twoStrokes = new double[2 * FeatureExtractor.FEATURES_PER_STROKE];
+            twoStrokes[twoStrokes.length - 1] = 1;
+            assertEquals(Double.NEGATIVE_INFINITY, model.score(twoStrokes).getScore(), 0.0);
+        }
+    }
+
+    @Test
+    public void removeSampleMatchesTrainingWithoutIt() {
+        Random random = new Random(5);
+
+        for (int trial = 0; trial < 200; trial++) {
+            ArrayList<double[]> samples = new ArrayList<double[]>();
+            GaussianModel model = new GaussianModel();
+            int count = 3 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                double[] sample = randomSample(random, 1 + random.nextInt(3));
+                samples.add(sample);
+                model.addSample(sample);
+            }
+
+            int removed = random.nextInt(count);
+            model.removeSample(removed);
+            samples.remove(removed);
+
+            GaussianModel expected = new GaussianModel();
+            for (double[] sample : samples) {
+                expected.addSample(sample);
+            }
+
+            assertEquals(expected.activeCount, model.activeCount);
+            for (int i = 0; i < model.dimensions; i++) {
+                double mean = i < expected.dimensions ? expected.means[i] : 0.0;
+                double variance = i < expected.dimensions ? expected.variances[i] : 0.0;
+                assertEquals(mean, model.means[i], 1e-9 * Math.max(1, Math.abs(mean)));
+                assertEquals(variance, model.variances[i], 1e-9 * Math.max(1, variance));
+            }
+        }
+    }
+
+    @Test
+    public void loadsLegacyModelWithEveryStrokeSlot() throws IOException {
+        GaussianModel trained = new GaussianModel();
+        Random random = new Random(7);
+        for (int i = 0; i < 6; i++) {
+            trained.addSample(randomSample(random, 2));
+        }
+
+        // version 1 files have no engine id and a slot for each of 12 strokes
+        File file = folder.newFile("legacy.model");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(ModelFiles.MODEL_MAGIC);
+            out.writeInt(1);
+            out.writeInt(12 * FeatureExtractor.FEATURES_PER_STROKE);
+            out.writeInt(GaussianModel.TOLERANCE);
+            out.writeDouble(GaussianModel.THRESHOLD);
+            out.writeInt(trained.getSampleCount());
+            for (int i = 0; i < 12 * FeatureExtractor.FEATURES_PER_STROKE; i++) {
+                out.writeDouble(i < trained.dimensions ? trained.means[i] : 0.0);
+                out.writeDouble(i < trained.dimensions ? trained.variances[i] : 0.0);
+            }
+        } finally {
+            out.close();
+        }
+
+        GaussianModel loaded = (GaussianModel) ModelFiles.load(file);
+
+        assertEquals(2 * FeatureExtractor.FEATURES_PER_STROKE, loaded.getDimensions());
+        assertEquals(trained.getSampleCount(), loaded.getSampleCount());
+        assertEquals(trained.activeCount, loaded.activeCount);
+
+        double[] genuine = trained.numericalRep.get(0);
+        assertEquals(trained.score(genuine).getScore(), loaded.score(genuine).getScore(), 1e-12);
+        assertFalse(loaded.score(randomSample(random, 3)).isAccepted());
+    }
+
+    @Test
+    public void savedModelLoadsTheSame() throws IOException {
+        GaussianModel trained = new GaussianModel();
+        Random random = new Random(11);
+        for (int i = 0; i < 6; i++) {
+            trained.addSample(randomSample(random, 3));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        trained.write(new DataOutputStream(bytes));
+        GaussianModel loaded = GaussianModel.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (double[] sample : trained.numericalRep) {
+            assertEquals(trained.score(sample).getScore(), loaded.score(sample).getScore(), 0.0);
+        }
+    }
+
+    private static double[] randomSample(Random random, int strokes) {
+        double[] sample = new double[strokes * FeatureExtractor.FEATURES_PER_STROKE];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = 100 * random.nextDouble();
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.osu.cse.doodleLock.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ModelIndexTest {
+
+    private static final int USERS = 200;
+
+    @Test
+    public void identifyMatchesScoringEveryModel() {
+        Random random = new Random(3);
+        ModelIndex index = new ModelIndex();
+        HashMap<String, GaussianModel> models = new HashMap<String, GaussianModel>();
+        ArrayList<Stroke[]> templates = new ArrayList<Stroke[]>();
+
+        for (int user = 0; user < USERS; user++) {
+            Stroke[] template = randomDoodle(random, 1 + random.nextInt(4));
+            templates.add(template);
+
+            GaussianModel model = new GaussianModel();
+            for (int i = 0; i < 5 + random.nextInt(6); i++) {
+                model.addSample(jitter(random, template, 6));
+            }
+            models.put("user" + user, model);
+            index.put("user" + user, model);
+        }
+
+        int matched = 0;
+        for (int attempt = 0; attempt < 2000; attempt++) {
+            Stroke[] doodle;
+            if (attempt % 2 == 0) {
+                doodle = jitter(random, templates.get(random.nextInt(USERS)), 6);
+            } else {
+                doodle = randomDoodle(random, 1 + random.nextInt(4));
+            }
+
+            HashMap<String, Double> expected = new HashMap<String, Double>();
+            for (Map.Entry<String, GaussianModel> entry : models.entrySet()) {
+                AuthenticationResult result = entry.getValue().score(doodle);
+                if (result.isAccepted()) {
+                    expected.put(entry.getKey(), result.getScore());
+                }
+            }
+
+            List<ModelIndex.Match> matches = index.identify(doodle, USERS);
+            assertEquals(expected.size(), matches.size());
+            for (ModelIndex.Match match : matches) {
+                assertTrue(expected.containsKey(match.getUser()));
+                assertEquals(expected.get(match.getUser()), match.getScore(), 0.0);
+            }
+            for (int i = 1; i < matches.size(); i++) {
+                assertTrue(matches.get(i - 1).getMargin() >= matches.get(i).getMargin());
+            }
+            matched += matches.size();
+        }
+
+        // the comparison means little if nothing was ever accepted
+        assertTrue(matched > 500);
+    }
+
+    @Test
+    public void removedUsersAreNotMatched() {
+        Random random = new Random(4);
+        Stroke[] template = randomDoodle(random, 2);
+
+        GaussianModel model = new GaussianModel();
+        for (int i = 0; i < 8; i++) {
+            model.addSample(jitter(random, template, 6));
+        }
+
+        ModelIndex index = new ModelIndex();
+        index.put("alice", model);
+        index.put("bob", model);
+        index.remove("alice");
+
+        List<ModelIndex.Match> matches = index.identify(template, 10);
+        assertEquals(1, matches.size());
+        assertEquals("bob", matches.get(0).getUser());
+    }
+
+    private static Stroke[] randomDoodle(Random random, int strokes) {
+        Stroke[] doodle = new Stroke[strokes];
+        for (int s = 0; s < strokes; s++) {
+            int points = 4 + random.nextInt(8);
+            float[] xy = new float[2 * points];
+            long[] times = new long[points];
+            for (int p = 0; p < points; p++) {
+                xy[2 * p] = 400 * random.nextFloat();
+                xy[2 * p + 1] = 400 * random.nextFloat();
+                times[p] = 20 * p;
+            }
+            doodle[s] = new Stroke(xy, times);
+        }
+        return doodle;
+    }
+
+    private static Stroke[] jitter(Random random, Stroke[] doodle, float amount) {
+        Stroke[] copy = new Stroke[doodle.length];
+        for (int s = 0; s < doodle.length; s++) {
+            float[] xy = doodle[s].getPoints().clone();
+            for (int p = 0; p < xy.length; p++) {
+                xy[p] += amount * (float) random.nextGaussian();
+            }
+            long[] times = doodle[s].getTimestamps().clone();
+            times[times.length - 1] += (long) (10 * random.nextGaussian());
+            copy[s] = new Stroke(xy, times);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,168 @@
+package edu.osu.cse.doodleLock.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SampleJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File journal;
+    private File gestures;
+
+    @Before
+    public void setUp() throws IOException {
+        journal = new File(folder.getRoot(), "user.journal");
+        gestures = new File(folder.getRoot(), "user");
+    }
+
+    @Test
+    public void recoversEverySampleInOrder() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            SampleJournal.append(journal, i, sample(i));
+        }
+
+        ArrayList<Stroke[]> samples = SampleJournal.recover(journal);
+        assertEquals(3, samples.size());
+        for (int i = 0; i < 3; i++) {
+            assertSameSample(sample(i), samples.get(i));
+        }
+        assertFalse(SampleJournal.isFinished(journal));
+    }
+
+    @Test
+    public void missingJournalRecoversNothing() throws IOException {
+        assertTrue(SampleJournal.recover(journal).isEmpty());
+        assertFalse(SampleJournal.isFinished(journal));
+    }
+
+    @Test
+    public void dropsRecordCutShortAndAppendsAfterTheLastValidOne() throws IOException {
+        SampleJournal.append(journal, 0, sample(0));
+        SampleJournal.append(journal, 1, sample(1));
+        long valid = journal.length();
+        SampleJournal.append(journal, 2, sample(2));
+
+        truncate(journal.length() - 3);
+
+        ArrayList<Stroke[]> samples = SampleJournal.recover(journal);
+        assertEquals(2, samples.size());
+        assertEquals(valid, journal.length());
+
+        SampleJournal.append(journal, 3, sample(3));
+        samples = SampleJournal.recover(journal);
+        assertEquals(3, samples.size());
+        assertSameSample(sample(3), samples.get(2));
+    }
+
+    @Test
+    public void dropsRecordWithBadChecksum() throws IOException {
+        SampleJournal.append(journal, 0, sample(0));
+        SampleJournal.append(journal, 1, sample(1));
+
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        try {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        assertEquals(1, SampleJournal.recover(journal).size());
+    }
+
+    @Test
+    public void partialHeaderRecoversNothing() throws IOException {
+        SampleJournal.append(journal, 0, sample(0));
+        truncate(5);
+
+        assertTrue(SampleJournal.recover(journal).isEmpty());
+
+        SampleJournal.append(journal, 1, sample(1));
+        ArrayList<Stroke[]> samples = SampleJournal.recover(journal);
+        assertEquals(1, samples.size());
+        assertSameSample(sample(1), samples.get(0));
+    }
+
+    @Test
+    public void compactsFinishedSessionIntoLibrary() throws IOException {
+        SampleJournal.append(journal, 10, sample(0));
+        SampleJournal.append(journal, 11, sample(1));
+
+        // a session in progress is left alone
+        SampleJournal.compact(journal, gestures);
+        assertFalse(gestures.exists());
+
+        SampleJournal.finish(journal);
+        assertTrue(SampleJournal.isFinished(journal));
+        SampleJournal.compact(journal, gestures);
+
+        assertFalse(journal.exists());
+        LinkedHashMap<String, ArrayList<Stroke[]>> library = GestureLibraryReader.read(gestures);
+        assertEquals(2, library.size());
+        assertSameSample(sample(0), library.get("10").get(0));
+        assertSameSample(sample(1), library.get("11").get(0));
+    }
+
+    @Test
+    public void newSessionAfterFinishReplacesTheFinishedOne() throws IOException {
+        SampleJournal.append(journal, 0, sample(0));
+        SampleJournal.append(journal, 1, sample(1));
+        SampleJournal.finish(journal);
+
+        SampleJournal.append(journal, 2, sample(2));
+
+        assertFalse(SampleJournal.isFinished(journal));
+        ArrayList<Stroke[]> samples = SampleJournal.recover(journal);
+        assertEquals(1, samples.size());
+        assertSameSample(sample(2), samples.get(0));
+
+        SampleJournal.finish(journal);
+        SampleJournal.compact(journal, gestures);
+        LinkedHashMap<String, ArrayList<Stroke[]>> library = GestureLibraryReader.read(gestures);
+        assertEquals(1, library.size());
+        assertTrue(library.containsKey("2"));
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static Stroke[] sample(int seed) {
+        Stroke[] strokes = new Stroke[1 + seed % 3];
+        for (int s = 0; s < strokes.length; s++) {
+            float[] points = new float[] { seed, s, seed + 10, s + 20, seed + 30, s + 5 };
+            strokes[s] = new Stroke(points, new long[] { 0, 15, 40 });
+        }
+        return strokes;
+    }
+
+    private static void assertSameSample(Stroke[] expected, Stroke[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int s = 0; s < expected.length; s++) {
+            assertArrayEquals(expected[s].getPoints(), actual[s].getPoints(), 0f);
+            assertArrayEquals(expected[s].getTimestamps(), actual[s].getTimestamps());
+        }
+    }
+}
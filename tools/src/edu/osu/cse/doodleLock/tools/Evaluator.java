@@ -0,0 +1,289 @@
+package edu.osu.cse.doodleLock.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import edu.osu.cse.doodleLock.core.BatchScorer;
+import edu.osu.cse.doodleLock.core.CompiledModel;
+import edu.osu.cse.doodleLock.core.FeatureBatch;
+import edu.osu.cse.doodleLock.core.FeatureExtractor;
+import edu.osu.cse.doodleLock.core.GaussianModel;
+import edu.osu.cse.doodleLock.core.GestureLibraryReader;
+import edu.osu.cse.doodleLock.core.Stroke;
+import edu.osu.cse.doodleLock.core.UserFiles;
+
+/**
+ * Measures false accept and false reject rates over the users saved by
+ * CreateDoodleActivity. Genuine scores come from training a model on all but
+ * one of a user's gestures and scoring the one left out, for each gesture in
+ * turn. Impostor scores come from scoring every user's model against every
+ * other user's gestures. Users are
+ * scored in parallel with fork/join and scores are counted into histograms
+ * rather than kept, so memory does not grow with the number of pairs.
+ *
+ * Usage: Evaluator rootDir [output.csv]
+ *
+ * The output has one row per threshold with the false accept rate (FAR), false
+ * reject rate (FRR) and true accept rate. Plot FAR against the true accept rate
+ * for a ROC curve, or FAR against FRR for a DET curve.
+ *
+ * @author David
+ *
+ */
+public class Evaluator {
+
+    /**
+     * A user's gestures, extracted once and shared by every task
+     */
+    static class User {
+        final String name;
+        final ArrayList<double[]> samples;
+        final FeatureBatch batch;
+
+        User(String name, ArrayList<double[]> samples) {
+            this.name = name;
+            this.samples = samples;
+            this.batch = new FeatureBatch(samples.size());
+            for (double[] sample : samples) {
+                batch.add(sample);
+            }
+        }
+    }
+
+    /**
+     * Genuine and impostor scores of a range of users. Besides the histograms
+     * used for the curve, attempts are counted exactly against LOG_THRESHOLD,
+     * which falls inside a histogram bin
+     */
+    static class Scores {
+        final ScoreHistogram genuine = new ScoreHistogram();
+        final ScoreHistogram impostor = new ScoreHistogram();
+        long genuineRejected;
+        long impostorAccepted;
+
+        void addGenuine(double score) {
+            genuine.add(score);
+            if (!CompiledModel.isAccepted(score)) {
+                genuineRejected++;
+            }
+        }
+
+        void addImpostor(double score) {
+            impostor.add(score);
+            if (CompiledModel.isAccepted(score)) {
+                impostorAccepted++;
+            }
+        }
+
+        void addAll(Scores other) {
+            genuine.addAll(other.genuine);
+            impostor.addAll(other.impostor);
+            genuineRejected += other.genuineRejected;
+            impostorAccepted += other.impostorAccepted;
+        }
+    }
+
+    /**
+     * Scores the models of the users in [from, to) against every user
+     */
+    static class ScoreTask extends RecursiveTask<Scores> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final User[] users;
+        private final int from;
+        private final int to;
+
+        ScoreTask(User[] users, int from, int to) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Scores compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ScoreTask left = new ScoreTask(users, from, middle);
+                left.fork();
+                Scores scores = new ScoreTask(users, middle, to).compute();
+                scores.addAll(left.join());
+                return scores;
+            }
+
+            Scores scores = new Scores();
+            User user = users[from];
+
+            BatchScorer scorer = new BatchScorer();
+            FeatureBatch heldOut = new FeatureBatch(1);
+
+            // train a fresh model without each sample in turn, so no model
+            // carries the rounding of removing and adding samples back, and
+            // score the held out sample exactly as impostors are scored
+            for (int i = 0; i < user.samples.size(); i++) {
+                GaussianModel model = new GaussianModel();
+                for (int j = 0; j < user.samples.size(); j++) {
+                    if (j != i) {
+                        model.addSample(user.samples.get(j));
+                    }
+                }
+
+                heldOut.clear();
+                heldOut.add(user.samples.get(i));
+                scores.addGenuine(scorer.score(model, heldOut)[0]);
+            }
+
+            GaussianModel model = new GaussianModel();
+            for (double[] sample : user.samples) {
+                model.addSample(sample);
+            }
+
+            for (User other : users) {
+                if (other == user) {
+                    continue;
+                }
+                double[] results = scorer.score(model, other.batch);
+                for (int j = 0; j < other.batch.size(); j++) {
+                    scores.addImpostor(results[j]);
+                }
+            }
+
+            return scores;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.err.println("Usage: Evaluator rootDir [output.csv]");
+            System.exit(2);
+        }
+
+        File root = new File(args[0]);
+        File output = new File(args.length > 1 ? args[1] : "roc.csv");
+
+        User[] users = loadUsers(root);
+        if (users.length < 2) {
+            System.err.println("Need at least two users with two or more gestures in " + root);
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        Scores scores = new ForkJoinPool().invoke(new ScoreTask(users, 0, users.length));
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        System.out.println("Users: " + users.length);
+        System.out.println("Genuine attempts: " + scores.genuine.total);
+        System.out.println("Impostor attempts: " + scores.impostor.total);
+        System.out.println("Scoring took " + elapsed + " ms");
+
+        writeCurve(scores, output);
+        System.out.println("Curve written to " + output);
+
+        System.out.printf("At THRESHOLD %s: FAR %.4f, FRR %.4f%n", GaussianModel.THRESHOLD,
+                (double) scores.impostorAccepted / scores.impostor.total,
+                (double) scores.genuineRejected / scores.genuine.total);
+        printEqualErrorRate(scores);
+    }
+
+    /**
+     * Reads and extracts the training gestures of every user with at least two
+     */
+    static User[] loadUsers(File root) {
+
+        ArrayList<User> users = new ArrayList<User>();
+        File[] files = root.listFiles();
+
+        if (files == null) {
+            return new User[0];
+        }
+
+        for (File file : files) {
+            if (!UserFiles.isUserDir(file)) {
+                continue;
+            }
+
+            String name = file.getName();
+            File gestures = UserFiles.getGestureFile(root, name);
+
+            try {
+                ArrayList<double[]> samples = new ArrayList<double[]>();
+                for (Stroke[] gesture : GestureLibraryReader.readGestures(gestures)) {
+                    samples.add(FeatureExtractor.extract(gesture));
+                }
+
+                if (samples.size() < 2) {
+                    System.err.println("Skipping " + name + ": fewer than two gestures");
+                } else {
+                    users.add(new User(name, samples));
+                }
+            } catch (IOException e) {
+                System.err.println("Skipping " + name + ": " + e.getMessage());
+            }
+        }
+
+        return users.toArray(new User[users.size()]);
+    }
+
+    static double falseAcceptRate(Scores scores, int bin) {
+        return (double) scores.impostor.countAtOrAbove(bin) / scores.impostor.total;
+    }
+
+    static double falseRejectRate(Scores scores, int bin) {
+        return 1.0 - (double) scores.genuine.countAtOrAbove(bin) / scores.genuine.total;
+    }
+
+    static void writeCurve(Scores scores, File output) throws IOException {
+
+        PrintWriter out = new PrintWriter(output, "UTF-8");
+
+        try {
+            out.println("log_threshold,threshold,far,frr,tar");
+            for (int bin = 1; bin < ScoreHistogram.BIN_COUNT; bin++) {
+                double threshold = ScoreHistogram.threshold(bin);
+                double far = falseAcceptRate(scores, bin);
+                double frr = falseRejectRate(scores, bin);
+                out.printf("%.2f,%.6g,%.6f,%.6f,%.6f%n", threshold, Math.exp(threshold), far, frr, 1.0 - frr);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Prints the rate where false accepts and false rejects are equal,
+     * interpolating between the two thresholds where they cross
+     */
+    static void printEqualErrorRate(Scores scores) {
+
+        double previousFar = falseAcceptRate(scores, 0);
+        double previousFrr = falseRejectRate(scores, 0);
+
+        for (int bin = 1; bin < ScoreHistogram.BIN_COUNT; bin++) {
+            double far = falseAcceptRate(scores, bin);
+            double frr = falseRejectRate(scores, bin);
+
+            if (frr >= far) {
+                // FAR falls and FRR rises with the threshold, so they cross
+                // between the previous threshold and this one
+                double before = previousFar - previousFrr;
+                double after = far - frr;
+                double t = before == after ? 0.0 : before / (before - after);
+                double eer = previousFar + t * (far - previousFar);
+                System.out.printf("Equal error rate: %.4f near log threshold %.2f%n", eer,
+                        ScoreHistogram.threshold(bin));
+                return;
+            }
+
+            previousFar = far;
+            previousFrr = frr;
+        }
+
+        System.out.println("Equal error rate: not reached");
+    }
+}
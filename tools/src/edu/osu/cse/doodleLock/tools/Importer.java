@@ -0,0 +1,285 @@
+package edu.osu.cse.doodleLock.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.osu.cse.doodleLock.core.DoodleModel;
+import edu.osu.cse.doodleLock.core.DtwModel;
+import edu.osu.cse.doodleLock.core.Enrollment;
+import edu.osu.cse.doodleLock.core.GaussianModel;
+import edu.osu.cse.doodleLock.core.GestureLibraryReader;
+import edu.osu.cse.doodleLock.core.Stroke;
+import edu.osu.cse.doodleLock.core.UserFiles;
+import edu.osu.cse.doodleLock.core.UserIndex;
+
+/**
+ * Enrolls many users at once from a directory of their training doodles, for
+ * setting up a new site without a training session per user. Every user is
+ * read, validated, trained and saved on a fixed pool of worker threads, one
+ * per core by default. A user that fails is reported and skipped, the others
+ * are still enrolled.
+ *
+ * Usage: Importer [-threads n] [-dtw] sourceDir rootDir
+ *
+ * Each entry of sourceDir is one user, named by the entry. A file is read as a
+ * GestureLibrary file with one training doodle per gesture. A directory holds
+ * GestureLibrary files and raw stroke files ending in .strokes, read in name
+ * order. A raw stroke file is one training doodle with one stroke per line,
+ * each stroke a list of x y time triples separated by whitespace, time in
+ * milliseconds. Blank lines and lines starting with # are skipped.
+ *
+ * Users are written to rootDir as CreateDoodleActivity would, and added to its
+ * user index. Users already in rootDir are left alone and reported. The index
+ * is written as users are enrolled, at most every INDEX_WRITE_INTERVAL. Users
+ * a killed run enrolled after the last write are added to the index by the
+ * next run.
+ *
+ * @author David
+ *
+ */
+public class Importer {
+
+    /**
+     * Extension of raw stroke files
+     */
+    static final String RAW_EXTENSION = ".strokes";
+
+    /**
+     * The longest the user index goes without being written while users are
+     * enrolled, in milliseconds
+     */
+    static final long INDEX_WRITE_INTERVAL = 1000;
+
+    /**
+     * Enrolls one user, returning a description of the result
+     */
+    static class ImportTask implements Callable<String> {
+
+        private final File source;
+        private final File root;
+        private final boolean dtw;
+        private final UserIndex index;
+
+        ImportTask(File source, File root, boolean dtw, UserIndex index) {
+            this.source = source;
+            this.root = root;
+            this.dtw = dtw;
+            this.index = index;
+        }
+
+        public String call() throws IOException {
+            String user = source.getName();
+
+            try {
+                List<Stroke[]> samples = readSamples(source);
+
+                DoodleModel model = dtw ? new DtwModel() : new GaussianModel();
+                Enrollment.enroll(root, user, samples, model);
+                index.trained(user, model.getSampleCount(), System.currentTimeMillis());
+
+                return user + ": " + samples.size() + " samples";
+            } catch (IllegalArgumentException | IOException e) {
+                throw new IOException(user + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean dtw = false;
+        int arg = 0;
+
+        while (arg < args.length && args[arg].startsWith("-")) {
+            if (args[arg].equals("-threads") && arg + 1 < args.length) {
+                threads = Integer.parseInt(args[arg + 1]);
+                arg += 2;
+            } else if (args[arg].equals("-dtw")) {
+                dtw = true;
+                arg++;
+            } else {
+                break;
+            }
+        }
+
+        if (args.length - arg != 2 || threads < 1) {
+            System.err.println("Usage: Importer [-threads n] [-dtw] sourceDir rootDir");
+            System.exit(2);
+        }
+
+        File source = new File(args[arg]);
+        File root = new File(args[arg + 1]);
+
+        File[] users = source.listFiles();
+        if (users == null) {
+            System.err.println("Could not list " + source);
+            System.exit(1);
+        }
+        Arrays.sort(users);
+        root.mkdirs();
+
+        // users already in the root are kept in the index, including any a
+        // killed run enrolled without writing the index
+        File indexFile = UserFiles.getUserIndexFile(root);
+        UserIndex index;
+        try {
+            index = UserIndex.read(indexFile);
+            int missing = index.addMissing(root);
+            if (missing > 0) {
+                System.out.println("Added " + missing + " users missing from the index");
+                index.write(indexFile);
+            }
+        } catch (IOException e) {
+            index = UserIndex.rebuild(root);
+            index.write(indexFile);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<String> completions = new ExecutorCompletionService<String>(executor);
+
+        long start = System.nanoTime();
+        int submitted = 0;
+        for (File user : users) {
+            if (user.getName().startsWith(".")) {
+                continue;
+            }
+            completions.submit(new ImportTask(user, root, dtw, index));
+            submitted++;
+        }
+
+        int enrolled = 0;
+        int unwritten = 0;
+        long lastWrite = System.nanoTime();
+        for (int done = 1; done <= submitted; done++) {
+            try {
+                String result = completions.take().get();
+                enrolled++;
+                unwritten++;
+                System.out.println("[" + done + "/" + submitted + "] " + result);
+            } catch (ExecutionException e) {
+                System.err.println("[" + done + "/" + submitted + "] Failed " + describe(e.getCause()));
+            }
+
+            if (unwritten > 0 && (System.nanoTime() - lastWrite) / 1000000 >= INDEX_WRITE_INTERVAL) {
+                index.write(indexFile);
+                unwritten = 0;
+                lastWrite = System.nanoTime();
+            }
+        }
+        executor.shutdown();
+
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        if (unwritten > 0) {
+            index.write(indexFile);
+        }
+
+        System.out.println("Enrolled " + enrolled + " of " + submitted + " users with " + threads + " threads in "
+                + elapsed + " ms");
+        if (enrolled < submitted) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads every training doodle of a user, from a single GestureLibrary file
+     * or from a directory of GestureLibrary and raw stroke files
+     */
+    static List<Stroke[]> readSamples(File source) throws IOException {
+
+        ArrayList<Stroke[]> samples = new ArrayList<Stroke[]>();
+
+        if (!source.isDirectory()) {
+            samples.addAll(read(source));
+            return samples;
+        }
+
+        File[] files = source.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + source);
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            if (file.isFile() && !file.getName().startsWith(".")) {
+                samples.addAll(read(file));
+            }
+        }
+        return samples;
+    }
+
+    private static List<Stroke[]> read(File file) throws IOException {
+        try {
+            if (file.getName().endsWith(RAW_EXTENSION)) {
+                ArrayList<Stroke[]> sample = new ArrayList<Stroke[]>(1);
+                sample.add(readRaw(file));
+                return sample;
+            }
+            return GestureLibraryReader.readGestures(file);
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a raw stroke file, one stroke per line of x y time triples
+     */
+    static Stroke[] readRaw(File file) throws IOException {
+
+        ArrayList<Stroke> strokes = new ArrayList<Stroke>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] values = line.split("\\s+");
+                if (values.length % 3 != 0) {
+                    throw new IOException("Line " + lineNumber + " is not a list of x y time triples");
+                }
+
+                int pointCount = values.length / 3;
+                float[] points = new float[2 * pointCount];
+                long[] timestamps = new long[pointCount];
+
+                try {
+                    for (int i = 0; i < pointCount; i++) {
+                        points[2 * i] = Float.parseFloat(values[3 * i]);
+                        points[2 * i + 1] = Float.parseFloat(values[3 * i + 1]);
+                        timestamps[i] = Long.parseLong(values[3 * i + 2]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+                }
+
+                strokes.add(new Stroke(points, timestamps));
+            }
+        } finally {
+            in.close();
+        }
+
+        return strokes.toArray(new Stroke[strokes.size()]);
+    }
+
+    private static String describe(Throwable cause) {
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package edu.osu.cse.doodleLock.tools;
+
+/**
+ * Fixed size histogram of log confidence scores. Scores are counted into
+ * equal width bins instead of being kept, so any number of scores can be
+ * recorded in constant memory
+ *
+ * @author David
+ *
+ */
+class ScoreHistogram {
+
+    /**
+     * Lowest score with its own bin, lower scores share the first bin
+     */
+    static final double MIN_SCORE = -60.0;
+
+    /**
+     * Highest score with its own bin, higher scores share the last bin. A
+     * score is at most the log of its model's active dimension count, so this
+     * covers models of up to 148 dimensions, 18 strokes
+     */
+    static final double MAX_SCORE = 5.0;
+
+    static final double BIN_WIDTH = 0.05;
+
+    static final int BIN_COUNT = (int) Math.ceil((MAX_SCORE - MIN_SCORE) / BIN_WIDTH) + 1;
+
+    /**
+     * counts[0] holds every score below MIN_SCORE, including negative infinity
+     */
+    final long[] counts = new long[BIN_COUNT];
+
+    long total;
+
+    void add(double score) {
+        counts[bin(score)]++;
+        total++;
+    }
+
+    void addAll(ScoreHistogram other) {
+        for (int i = 0; i < BIN_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * @param bin
+     *            Index of a bin
+     * @return Number of scores at or above the lowest score of the bin
+     */
+    long countAtOrAbove(int bin) {
+        long count = 0;
+        for (int i = bin; i < BIN_COUNT; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /**
+     * @param bin
+     *            Index of a bin
+     * @return The lowest score counted in the bin
+     */
+    static double threshold(int bin) {
+        return bin == 0 ? Double.NEGATIVE_INFINITY : MIN_SCORE + (bin - 1) * BIN_WIDTH;
+    }
+
+    /**
+     * @param score
+     *            A log confidence
+     * @return The bin the score is counted in
+     */
+    static int bin(double score) {
+        if (!(score >= MIN_SCORE)) {
+            return 0;
+        }
+        return Math.min(BIN_COUNT - 1, 1 + (int) ((score - MIN_SCORE) / BIN_WIDTH));
+    }
+}